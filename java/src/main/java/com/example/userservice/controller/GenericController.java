@@ -1,23 +1,36 @@
 package com.example.userservice.controller;
 
+import com.example.userservice.model.CursorPage;
 import com.example.userservice.model.Entity;
+import com.example.userservice.service.AsyncEntityService;
 import com.example.userservice.service.EntityService;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.validation.Valid;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
- * Generic REST controller implementation for entity operations
+ * Generic REST controller implementation for entity operations.
+ * Services that also implement AsyncEntityService get non-blocking
+ * variants of each endpoint under /async.
  *
  * @param <T> the entity type
  * @param <ID> the entity identifier type
@@ -25,10 +38,20 @@ import java.util.Map;
  */
 public abstract class GenericController<T extends Entity<ID>, ID extends Serializable, S extends EntityService<T, ID>> {
 
+    private static final int STREAM_FLUSH_INTERVAL = 100;
+
     protected final S service;
+    protected final AsyncEntityService<T, ID> asyncService;
+
+    @Autowired
+    protected ObjectMapper objectMapper;
 
+    @SuppressWarnings("unchecked")
     public GenericController(S service) {
         this.service = service;
+        this.asyncService = service instanceof AsyncEntityService
+                ? (AsyncEntityService<T, ID>) service
+                : null;
     }
 
     /**
@@ -45,26 +68,75 @@ public abstract class GenericController<T extends Entity<ID>, ID extends Seriali
     }
 
     /**
-     * Get all entities with pagination
+     * Get all entities with pagination.
+     * <p>
+     * The first page and any request with an {@code after} token are served by cursor,
+     * and the response carries a {@code nextPageToken} to pass as {@code after} for the
+     * following page. {@code pageNumber} beyond the first page falls back to offset paging.
+     * Set {@code includeTotal=false} to skip counting all entities.
      */
     @GetMapping
     public ResponseEntity<Map<String, Object>> getAll(
             @RequestParam(defaultValue = "10") int pageSize,
-            @RequestParam(defaultValue = "1") int pageNumber) {
-        
-        List<T> entities = service.findAll(pageSize, pageNumber);
-        int totalCount = service.getCount();
+            @RequestParam(defaultValue = "1") int pageNumber,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "true") boolean includeTotal) {
         
         Map<String, Object> response = new HashMap<>();
-        response.put("items", entities);
-        response.put("totalCount", totalCount);
+        if (after != null || pageNumber == 1) {
+            CursorPage<T> page;
+            try {
+                page = service.findPage(pageSize, after);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page token", e);
+            }
+            response.put("items", page.getItems());
+            response.put("nextPageToken", page.getNextPageToken());
+        } else {
+            response.put("items", service.findAll(pageSize, pageNumber));
+        }
+        
         response.put("pageSize", pageSize);
-        response.put("pageNumber", pageNumber);
-        response.put("totalPages", (int) Math.ceil((double) totalCount / pageSize));
+        if (after == null) {
+            response.put("pageNumber", pageNumber);
+        }
+        if (includeTotal) {
+            int totalCount = service.getCount();
+            response.put("totalCount", totalCount);
+            response.put("totalPages", (int) Math.ceil((double) totalCount / pageSize));
+        }
         
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Stream all entities as newline-delimited JSON. Entities are written as they
+     * arrive from the backend, so memory use does not grow with the number of entities.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> stream() {
+        StreamingResponseBody body = outputStream -> {
+            int[] written = {0};
+            service.streamAll(entity -> {
+                try {
+                    outputStream.write(objectMapper.writeValueAsBytes(entity));
+                    outputStream.write('\n');
+                    if (++written[0] % STREAM_FLUSH_INTERVAL == 0) {
+                        outputStream.flush();
+                    }
+                } catch (IOException e) {
+                    // Client went away; stop pulling from the backend
+                    throw new UncheckedIOException(e);
+                }
+            });
+            outputStream.flush();
+        };
+        
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     /**
      * Create a new entity
      */
@@ -106,7 +178,101 @@ public abstract class GenericController<T extends Entity<ID>, ID extends Seriali
     @DeleteMapping("/{id}")
     public ResponseEntity<Map<String, Object>> delete(@PathVariable ID id) {
         boolean deleted = service.delete(id);
+        return deleteResponse(deleted);
+    }
+
+    /**
+     * Get entity by ID without blocking a request thread
+     */
+    @GetMapping("/async/{id}")
+    public CompletableFuture<ResponseEntity<T>> getByIdAsync(@PathVariable ID id) {
+        return requireAsyncService().findByIdAsync(id)
+                .handle((entity, e) -> {
+                    if (e != null) {
+                        throw translateAsyncError(e);
+                    }
+                    return ResponseEntity.ok(entity);
+                });
+    }
+
+    /**
+     * Get all entities with pagination without blocking a request thread.
+     * The page and the count are requested concurrently.
+     */
+    @GetMapping("/async")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> getAllAsync(
+            @RequestParam(defaultValue = "10") int pageSize,
+            @RequestParam(defaultValue = "1") int pageNumber) {
+        
+        AsyncEntityService<T, ID> async = requireAsyncService();
+        return async.findAllAsync(pageSize, pageNumber)
+                .thenCombine(async.getCountAsync(), (entities, totalCount) ->
+                        ResponseEntity.ok(pageResponse(entities, totalCount, pageSize, pageNumber)));
+    }
+
+    /**
+     * Create a new entity without blocking a request thread
+     */
+    @PostMapping("/async")
+    public CompletableFuture<ResponseEntity<T>> createAsync(@Valid @RequestBody T entity) {
+        if (!entity.validate()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid entity data");
+        }
+        
+        return requireAsyncService().createAsync(entity)
+                .thenApply(createdEntity -> ResponseEntity.status(HttpStatus.CREATED).body(createdEntity));
+    }
+
+    /**
+     * Update an entity without blocking a request thread
+     */
+    @PutMapping("/async/{id}")
+    public CompletableFuture<ResponseEntity<T>> updateAsync(
+            @PathVariable ID id,
+            @Valid @RequestBody T entity) {
+        
+        if (!entity.validate()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid entity data");
+        }
+        
+        entity.setId(id); // Ensure ID matches path variable
         
+        return requireAsyncService().updateAsync(entity)
+                .handle((updatedEntity, e) -> {
+                    if (e != null) {
+                        throw translateAsyncError(e);
+                    }
+                    return ResponseEntity.ok(updatedEntity);
+                });
+    }
+
+    /**
+     * Delete an entity without blocking a request thread
+     */
+    @DeleteMapping("/async/{id}")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> deleteAsync(@PathVariable ID id) {
+        return requireAsyncService().deleteAsync(id)
+                .thenApply(this::deleteResponse);
+    }
+
+    private AsyncEntityService<T, ID> requireAsyncService() {
+        if (asyncService == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_IMPLEMENTED, "Async operations not supported");
+        }
+        return asyncService;
+    }
+
+    private Map<String, Object> pageResponse(List<T> entities, int totalCount, int pageSize, int pageNumber) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("items", entities);
+        response.put("totalCount", totalCount);
+        response.put("pageSize", pageSize);
+        response.put("pageNumber", pageNumber);
+        response.put("totalPages", (int) Math.ceil((double) totalCount / pageSize));
+        return response;
+    }
+
+    private ResponseEntity<Map<String, Object>> deleteResponse(boolean deleted) {
         Map<String, Object> response = new HashMap<>();
         if (deleted) {
             response.put("success", true);
@@ -118,4 +284,15 @@ public abstract class GenericController<T extends Entity<ID>, ID extends Seriali
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Map an async failure to the same HTTP error the blocking endpoints return
+     */
+    private static RuntimeException translateAsyncError(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof EntityNotFoundException) {
+            return new ResponseStatusException(HttpStatus.NOT_FOUND, "Entity not found", cause);
+        }
+        return cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+    }
+}
@@ -17,17 +17,24 @@ import java.util.List;
 @RequestMapping("/api/users")
 public class UserController extends GenericController<User, Integer, UserService> {
 
+    private static final int MAX_SEARCH_LIMIT = 1000;
+
     @Autowired
     public UserController(UserService userService) {
         super(userService);
     }
 
     /**
-     * Search users by username
+     * Search users by username. {@code limit} is capped at 1000 so a single request
+     * cannot scan the whole table.
      */
     @GetMapping("/search")
-    public ResponseEntity<List<User>> searchByUsername(@RequestParam String username) {
-        List<User> users = service.findByUsername(username);
+    public ResponseEntity<List<User>> searchByUsername(
+            @RequestParam String username,
+            @RequestParam(defaultValue = "CONTAINS") UserService.MatchMode match,
+            @RequestParam(defaultValue = "100") int limit) {
+        
+        List<User> users = service.findByUsername(username, match, Math.min(limit, MAX_SEARCH_LIMIT));
         return ResponseEntity.ok(users);
     }
 
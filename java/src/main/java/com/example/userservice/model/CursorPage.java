@@ -0,0 +1,30 @@
+package com.example.userservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * One page of entities from a keyset (cursor) listing
+ *
+ * @param <T> the entity type
+ */
+@Getter
+@AllArgsConstructor
+public class CursorPage<T> {
+    
+    private final List<T> items;
+    
+    /**
+     * Opaque token for the following page, or null on the last page
+     */
+    private final String nextPageToken;
+    
+    /**
+     * Check if another page follows this one
+     */
+    public boolean hasNext() {
+        return nextPageToken != null;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.userservice.service;
+
+import com.example.userservice.model.Entity;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import io.grpc.Channel;
+import io.grpc.StatusRuntimeException;
+
+import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Variant of AbstractGrpcEntityService that also offers the non-blocking
+ * AsyncEntityService operations on top of a gRPC future stub.
+ *
+ * @param <T> the entity type
+ * @param <ID> the entity identifier type
+ * @param <S> the gRPC blocking stub type
+ * @param <F> the gRPC future stub type
+ */
+public abstract class AbstractAsyncGrpcEntityService<T extends Entity<ID>, ID extends Serializable, S, F>
+        extends AbstractGrpcEntityService<T, ID, S> implements AsyncEntityService<T, ID> {
+
+    protected F futureStub;
+
+    /**
+     * Initialize the gRPC channel and both stubs
+     */
+    @Override
+    public void init() {
+        super.init();
+        futureStub = createFutureStub(channel);
+    }
+
+    /**
+     * Create a gRPC future stub for the specific service
+     *
+     * @param channel the gRPC channel
+     * @return the service future stub
+     */
+    protected abstract F createFutureStub(Channel channel);
+
+    /**
+     * Fetch an entity from the backend without blocking, bypassing the cache
+     *
+     * @param id the entity ID
+     * @return future completed with the entity
+     */
+    protected abstract CompletableFuture<T> fetchByIdAsync(ID id);
+
+    @Override
+    public CompletableFuture<T> findByIdAsync(ID id) {
+        if (cache == null) {
+            return fetchByIdAsync(id);
+        }
+
+        return cache.get(id, (key, executor) -> fetchByIdAsync(key))
+                .thenApply(this::copyOf);
+    }
+
+    /**
+     * Adapt a gRPC ListenableFuture to a CompletableFuture. Cancelling the returned
+     * future cancels the underlying call.
+     *
+     * @param listenableFuture the future returned by the gRPC future stub
+     * @return a CompletableFuture completed when the call finishes
+     */
+    protected static <R> CompletableFuture<R> toCompletableFuture(ListenableFuture<R> listenableFuture) {
+        CompletableFuture<R> future = new CompletableFuture<R>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                listenableFuture.cancel(mayInterruptIfRunning);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+
+        Futures.addCallback(listenableFuture, new FutureCallback<R>() {
+            @Override
+            public void onSuccess(R result) {
+                future.complete(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+
+        return future;
+    }
+
+    /**
+     * Extract the gRPC status exception from a failed stage, if the failure came from gRPC
+     *
+     * @param e the failure passed to a completion stage
+     * @return the gRPC exception, or null if the failure has another cause
+     */
+    protected static StatusRuntimeException grpcCause(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof StatusRuntimeException ? (StatusRuntimeException) cause : null;
+    }
+
+    /**
+     * Handle a failed async call on a single entity the same way the blocking path does
+     *
+     * @param e the failure passed to a completion stage
+     * @param id the entity ID that was being queried
+     * @throws jakarta.persistence.EntityNotFoundException if the entity was not found
+     */
+    protected void handleAsyncGrpcError(Throwable e, ID id) {
+        StatusRuntimeException grpcError = grpcCause(e);
+        if (grpcError != null) {
+            handleGrpcError(grpcError, id);
+        }
+        throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+    }
+
+    /**
+     * Wrap a failed async call in the exception the blocking path would throw
+     *
+     * @param e the failure passed to a completion stage
+     * @param message description of the failed operation
+     * @return the exception to throw from the completion stage
+     */
+    protected static RuntimeException asyncFailure(Throwable e, String message) {
+        StatusRuntimeException grpcError = grpcCause(e);
+        if (grpcError != null) {
+            return new RuntimeException(message + ": " + grpcError.getMessage(), grpcError);
+        }
+        return e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+    }
+}
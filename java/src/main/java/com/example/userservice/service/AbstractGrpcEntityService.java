@@ -2,23 +2,46 @@ package com.example.userservice.service;
 
 import com.example.userservice.model.Entity;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.grpc.Channel;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
 import io.grpc.StatusRuntimeException;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.persistence.EntityNotFoundException;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 
 import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * Abstract base implementation of EntityService that communicates with a gRPC backend.
+ * Lookups by ID are served through a bounded read-through cache that subclasses
+ * invalidate on writes, and the total count is kept by a background-refreshed
+ * EntityCounter. Calls are spread over a pool of channels to one or more backend
+ * addresses. When spring.threads.virtual.enabled is set on Java 21+, gRPC
+ * callbacks also run on virtual threads.
  * 
  * @param <T> the entity type
  * @param <ID> the entity identifier type
@@ -31,22 +54,85 @@ public abstract class AbstractGrpcEntityService<T extends Entity<ID>, ID extends
 
     @Value("${grpc.server.port:50051}")
     protected int grpcPort;
+
+    /**
+     * Backend targets, e.g. "host1:50051,host2:50051" or "dns:///mojo-db-service:50051".
+     * Defaults to grpc.server.host and grpc.server.port.
+     */
+    @Value("${grpc.server.addresses:}")
+    protected List<String> grpcAddresses;
+
+    @Value("${grpc.client.pool-size:4}")
+    protected int channelPoolSize;
+
+    @Value("${grpc.client.selection:ROUND_ROBIN}")
+    protected GrpcChannelPool.Selection channelSelection;
+
+    @Value("${grpc.client.load-balancing-policy:round_robin}")
+    protected String loadBalancingPolicy;
+
+    /**
+     * Interval between keepalive pings. The server must accept pings this often:
+     * grpcio rejects pings more frequent than every 5 minutes unless configured
+     * otherwise, as the Mojo server is.
+     */
+    @Value("${grpc.client.keepalive-time:30s}")
+    protected Duration keepAliveTime;
+
+    @Value("${grpc.client.keepalive-timeout:10s}")
+    protected Duration keepAliveTimeout;
+
+    @Value("${grpc.client.keepalive-without-calls:false}")
+    protected boolean keepAliveWithoutCalls;
+    
+    @Value("${entity.cache.enabled:true}")
+    protected boolean cacheEnabled;
+
+    @Value("${entity.cache.maximum-size:10000}")
+    protected long cacheMaximumSize;
+
+    @Value("${entity.cache.expire-after-write:60s}")
+    protected Duration cacheExpireAfterWrite;
+
+    @Value("${entity.count.refresh-interval:30s}")
+    protected Duration countRefreshInterval;
+
+    @Value("${entity.count.estimated:false}")
+    protected boolean countEstimated;
+
+    @Autowired(required = false)
+    protected MeterRegistry meterRegistry;
+
+    @Autowired
+    protected Environment environment;
     
-    protected ManagedChannel channel;
+    protected GrpcChannelPool channel;
     protected S blockingStub;
+    protected AsyncCache<ID, T> cache;
+    protected EntityCounter counter;
     
     /**
-     * Initialize the gRPC channel and stub
+     * Initialize the gRPC channel pool and stub
      */
     @PostConstruct
     public void init() {
-        // Initialize gRPC channel
-        channel = ManagedChannelBuilder.forAddress(grpcHost, grpcPort)
-                .usePlaintext() // No TLS for simplicity - use TLS in production
-                .build();
+        // Initialize gRPC channels
+        channel = createChannelPool();
         
         // Create stub (specific implementation in subclasses)
         blockingStub = createStub(channel);
+        
+        // Create the entity cache and publish its statistics through actuator
+        if (cacheEnabled) {
+            cache = createCache();
+            if (meterRegistry != null) {
+                CaffeineCacheMetrics.monitor(meterRegistry, cache, getCacheName());
+            }
+        }
+        
+        // Keep the total count warm so list requests never wait for it
+        counter = new EntityCounter(getCacheName() + "-counter", this::fetchCount, countRefreshInterval);
+        counter.start();
     }
     
     /**
@@ -54,20 +140,192 @@ public abstract class AbstractGrpcEntityService<T extends Entity<ID>, ID extends
      */
     @PreDestroy
     public void destroy() {
+        if (counter != null) {
+            counter.close();
+        }
         try {
-            channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+            channel.shutdown();
+            channel.awaitTermination(5, TimeUnit.SECONDS);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
     }
     
+    /**
+     * Build the channel pool. Every target gets at least one channel; remaining
+     * channels are assigned to targets in turn.
+     * 
+     * @return the pool used by all stubs
+     */
+    protected GrpcChannelPool createChannelPool() {
+        List<String> configured = grpcAddresses == null ? List.of() : grpcAddresses.stream()
+                .map(String::trim)
+                .filter(address -> !address.isEmpty())
+                .collect(Collectors.toList());
+        List<String> addresses = configured.isEmpty() ? List.of(grpcHost + ":" + grpcPort) : configured;
+        
+        // Run call callbacks on virtual threads instead of gRPC's cached platform pool
+        Executor executor = environment != null && Threading.VIRTUAL.isActive(environment)
+                ? new VirtualThreadTaskExecutor("grpc-")
+                : null;
+        
+        int size = Math.max(channelPoolSize, addresses.size());
+        List<ManagedChannel> channels = new ArrayList<>(size);
+        List<String> targets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String target = addresses.get(i % addresses.size());
+            ManagedChannelBuilder<?> builder = ManagedChannelBuilder.forTarget(target)
+                    .usePlaintext() // No TLS for simplicity - use TLS in production
+                    .defaultLoadBalancingPolicy(loadBalancingPolicy) // Spreads over all resolved addresses
+                    .keepAliveTime(keepAliveTime.toMillis(), TimeUnit.MILLISECONDS)
+                    .keepAliveTimeout(keepAliveTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .keepAliveWithoutCalls(keepAliveWithoutCalls);
+            if (executor != null) {
+                builder.executor(executor);
+            }
+            channels.add(builder.build());
+            targets.add(target);
+        }
+        
+        GrpcChannelPool pool = new GrpcChannelPool(channels, targets, channelSelection);
+        
+        // Publish per-channel in-flight calls through actuator
+        if (meterRegistry != null) {
+            for (int i = 0; i < pool.size(); i++) {
+                int index = i;
+                Gauge.builder("grpc.client.channel.in.flight", pool, p -> p.getInFlight(index))
+                        .description("gRPC calls in flight on a pooled channel")
+                        .tag("service", getCacheName())
+                        .tag("channel", String.valueOf(index))
+                        .tag("target", pool.getTarget(index))
+                        .register(meterRegistry);
+            }
+        }
+        
+        return pool;
+    }
+    
     /**
      * Create a gRPC stub for the specific service
      * 
      * @param channel the gRPC channel
      * @return the service stub
      */
-    protected abstract S createStub(ManagedChannel channel);
+    protected abstract S createStub(Channel channel);
+    
+    /**
+     * Fetch an entity from the backend, bypassing the cache
+     * 
+     * @param id the entity ID
+     * @return the entity
+     * @throws EntityNotFoundException if entity not found
+     */
+    protected abstract T fetchById(ID id);
+    
+    /**
+     * Count all entities in the backend. Called in the background by the counter.
+     * 
+     * @return the count, exact or estimated depending on countEstimated
+     */
+    protected abstract int fetchCount();
+    
+    /**
+     * Create a copy of an entity so callers cannot mutate the cached instance
+     * 
+     * @param entity the entity to copy
+     * @return a copy of the entity
+     */
+    protected abstract T copyOf(T entity);
+    
+    /**
+     * Create the entity cache. Override to plug in a differently configured cache.
+     * <p>
+     * The cache holds futures so that a load never runs inside the cache's own
+     * synchronized compute, which would pin a virtual thread for the whole RPC.
+     * 
+     * @return the cache used for lookups by ID
+     */
+    protected AsyncCache<ID, T> createCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(cacheMaximumSize)
+                .expireAfterWrite(cacheExpireAfterWrite)
+                .recordStats()
+                .buildAsync();
+    }
+    
+    /**
+     * Name under which the cache metrics are registered
+     * 
+     * @return the cache name
+     */
+    protected String getCacheName() {
+        return getClass().getSimpleName();
+    }
+    
+    /**
+     * Remove an entity from the cache after it has been modified or deleted
+     * 
+     * @param id the entity ID
+     */
+    protected void evict(ID id) {
+        if (cache != null && id != null) {
+            cache.synchronous().invalidate(id);
+        }
+    }
+    
+    /**
+     * Signal that the number of entities changed, so the counter refreshes soon
+     */
+    protected void countChanged() {
+        if (counter != null) {
+            counter.invalidate();
+        }
+    }
+    
+    /**
+     * Get the total count of entities from the counter. The value may lag writes by
+     * a moment and is approximate when entity.count.estimated is enabled.
+     */
+    @Override
+    public int getCount() {
+        return counter != null ? counter.get() : fetchCount();
+    }
+    
+    @Override
+    public T findById(ID id) {
+        if (cache == null) {
+            return fetchById(id);
+        }
+        
+        // Publish a pending future so concurrent callers wait for this load instead of issuing
+        // their own. Going through get() records hits and misses for the cache metrics.
+        CompletableFuture<T> loading = new CompletableFuture<>();
+        CompletableFuture<T> future = cache.get(id, (key, executor) -> loading);
+        if (future != loading) {
+            try {
+                return copyOf(future.join());
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+        
+        try {
+            T entity = fetchById(id);
+            loading.complete(entity);
+            return copyOf(entity);
+        } catch (Throwable e) {
+            // Any failure must complete the future, or waiters on this id would hang until expiry
+            loading.completeExceptionally(e);
+            throw e;
+        }
+    }
     
     @Override
     public Optional<T> findByIdOptional(ID id) {
@@ -0,0 +1,67 @@
+package com.example.userservice.service;
+
+import com.example.userservice.model.Entity;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of EntityService. Every operation returns immediately
+ * and completes its future when the backend replies.
+ *
+ * @param <T> the entity type
+ * @param <ID> the entity identifier type
+ */
+public interface AsyncEntityService<T extends Entity<ID>, ID extends Serializable> {
+
+    /**
+     * Find an entity by ID
+     *
+     * @param id the entity ID
+     * @return future completed with the entity, or exceptionally with
+     *         jakarta.persistence.EntityNotFoundException if entity not found
+     */
+    CompletableFuture<T> findByIdAsync(ID id);
+
+    /**
+     * Get all entities with pagination
+     *
+     * @param pageSize number of entities per page
+     * @param pageNumber page number (1-based)
+     * @return future completed with the list of entities
+     */
+    CompletableFuture<List<T>> findAllAsync(int pageSize, int pageNumber);
+
+    /**
+     * Get total count of entities
+     *
+     * @return future completed with the total count
+     */
+    CompletableFuture<Integer> getCountAsync();
+
+    /**
+     * Create a new entity
+     *
+     * @param entity the entity to create
+     * @return future completed with the created entity with ID
+     */
+    CompletableFuture<T> createAsync(T entity);
+
+    /**
+     * Update an existing entity
+     *
+     * @param entity the entity with updated fields
+     * @return future completed with the updated entity, or exceptionally with
+     *         jakarta.persistence.EntityNotFoundException if entity not found
+     */
+    CompletableFuture<T> updateAsync(T entity);
+
+    /**
+     * Delete an entity by ID
+     *
+     * @param id the entity ID to delete
+     * @return future completed with true if deleted, false if not found
+     */
+    CompletableFuture<Boolean> deleteAsync(ID id);
+}
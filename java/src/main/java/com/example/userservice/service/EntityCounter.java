@@ -0,0 +1,119 @@
+package com.example.userservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.OptionalInt;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+
+/**
+ * Keeps a total entity count that is refreshed in the background, so readers get the
+ * last known value without waiting on the backend. Writes that change the count
+ * schedule an early refresh instead of recounting inline.
+ */
+public class EntityCounter implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EntityCounter.class);
+
+    /**
+     * Delay before a refresh triggered by invalidate(), so a burst of writes causes one recount
+     */
+    private static final Duration INVALIDATION_DELAY = Duration.ofMillis(500);
+
+    private final IntSupplier loader;
+    private final Duration refreshInterval;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean refreshPending = new AtomicBoolean(false);
+    private final ReentrantLock loadLock = new ReentrantLock();
+
+    private volatile int count = -1;
+
+    /**
+     * Create a counter
+     *
+     * @param name name of the refresh thread
+     * @param loader reads the count from the backend
+     * @param refreshInterval how often the count is refreshed
+     */
+    public EntityCounter(String name, IntSupplier loader, Duration refreshInterval) {
+        this.loader = loader;
+        this.refreshInterval = refreshInterval;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start the periodic refresh, loading the first value right away
+     */
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::refresh, 0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get the last known count. Only blocks if no count has been loaded yet.
+     *
+     * @return the count
+     */
+    public int get() {
+        int current = count;
+        if (current >= 0) {
+            return current;
+        }
+
+        loadLock.lock();
+        try {
+            if (count < 0) {
+                count = loader.getAsInt();
+            }
+            return count;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * Get the last known count without ever calling the backend
+     *
+     * @return the count, or empty if none has been loaded yet
+     */
+    public OptionalInt peek() {
+        int current = count;
+        return current >= 0 ? OptionalInt.of(current) : OptionalInt.empty();
+    }
+
+    /**
+     * Mark the count as changed; a refresh runs shortly in the background
+     */
+    public void invalidate() {
+        if (refreshPending.compareAndSet(false, true)) {
+            scheduler.schedule(this::refresh, INVALIDATION_DELAY.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void refresh() {
+        refreshPending.set(false);
+        try {
+            count = loader.getAsInt();
+        } catch (RuntimeException e) {
+            // Keep serving the previous value; the next scheduled refresh will retry
+            logger.warn("Failed to refresh entity count: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Stop the background refresh
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -1,10 +1,12 @@
 package com.example.userservice.service;
 
+import com.example.userservice.model.CursorPage;
 import com.example.userservice.model.Entity;
 
 import java.io.Serializable;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Generic service interface for entity operations
@@ -40,6 +42,24 @@ public interface EntityService<T extends Entity<ID>, ID extends Serializable> {
      */
     List<T> findAll(int pageSize, int pageNumber);
     
+    /**
+     * Get a page of entities following a cursor, in ID order. Unlike findAll, the cost
+     * of a page does not grow with how deep it is.
+     * 
+     * @param pageSize number of entities per page
+     * @param pageToken token from a previous page, or null for the first page
+     * @return the page and the token for the following page
+     * @throws IllegalArgumentException if the page token is invalid
+     */
+    CursorPage<T> findPage(int pageSize, String pageToken);
+    
+    /**
+     * Stream all entities one at a time without materializing them in memory
+     * 
+     * @param consumer receives each entity in ID order; throwing from it stops the stream
+     */
+    void streamAll(Consumer<? super T> consumer);
+    
     /**
      * Get total count of entities
      * 
@@ -0,0 +1,152 @@
+package com.example.userservice.service;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A Channel that spreads calls over several underlying channels, so traffic is not
+ * limited to the concurrent stream cap of one HTTP/2 connection or pinned to one
+ * backend replica. Tracks the number of in-flight calls on each channel.
+ */
+public class GrpcChannelPool extends Channel {
+
+    /**
+     * How a channel is picked for each new call
+     */
+    public enum Selection {
+        ROUND_ROBIN,
+        LEAST_OUTSTANDING
+    }
+
+    private final List<ManagedChannel> channels;
+    private final List<String> targets;
+    private final AtomicInteger[] inFlight;
+    private final Selection selection;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Create a pool over already built channels
+     *
+     * @param channels the channels to spread calls over
+     * @param targets the target each channel connects to, for metrics
+     * @param selection how to pick a channel per call
+     */
+    public GrpcChannelPool(List<ManagedChannel> channels, List<String> targets, Selection selection) {
+        if (channels.isEmpty() || channels.size() != targets.size()) {
+            throw new IllegalArgumentException("Channel pool needs one target per channel and at least one channel");
+        }
+        this.channels = List.copyOf(channels);
+        this.targets = List.copyOf(targets);
+        this.selection = selection;
+        this.inFlight = new AtomicInteger[channels.size()];
+        for (int i = 0; i < inFlight.length; i++) {
+            inFlight[i] = new AtomicInteger();
+        }
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions) {
+        int index = select();
+        AtomicInteger counter = inFlight[index];
+        ClientCall<ReqT, RespT> call = channels.get(index).newCall(method, callOptions);
+
+        return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(call) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                counter.incrementAndGet();
+                try {
+                    super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+                        @Override
+                        public void onClose(Status status, Metadata trailers) {
+                            counter.decrementAndGet();
+                            super.onClose(status, trailers);
+                        }
+                    }, headers);
+                } catch (RuntimeException e) {
+                    counter.decrementAndGet();
+                    throw e;
+                }
+            }
+        };
+    }
+
+    @Override
+    public String authority() {
+        return channels.get(0).authority();
+    }
+
+    private int select() {
+        int size = channels.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        if (selection == Selection.ROUND_ROBIN || size == 1) {
+            return start;
+        }
+
+        // Least outstanding, scanning from a rotating start so ties are spread evenly
+        int best = start;
+        int bestCount = inFlight[start].get();
+        for (int i = 1; i < size && bestCount > 0; i++) {
+            int candidate = (start + i) % size;
+            int count = inFlight[candidate].get();
+            if (count < bestCount) {
+                best = candidate;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Number of channels in the pool
+     */
+    public int size() {
+        return channels.size();
+    }
+
+    /**
+     * Target of the channel at the given index
+     */
+    public String getTarget(int index) {
+        return targets.get(index);
+    }
+
+    /**
+     * Number of calls currently in flight on the channel at the given index
+     */
+    public int getInFlight(int index) {
+        return inFlight[index].get();
+    }
+
+    /**
+     * Start an orderly shutdown of every channel
+     */
+    public void shutdown() {
+        channels.forEach(ManagedChannel::shutdown);
+    }
+
+    /**
+     * Wait for all channels to terminate
+     *
+     * @return true if every channel terminated within the timeout
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean terminated = true;
+        for (ManagedChannel channel : channels) {
+            long remaining = Math.max(0, deadline - System.nanoTime());
+            terminated &= channel.awaitTermination(remaining, TimeUnit.NANOSECONDS);
+        }
+        return terminated;
+    }
+}
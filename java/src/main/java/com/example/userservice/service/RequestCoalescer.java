@@ -0,0 +1,191 @@
+package com.example.userservice.service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Gathers individual key lookups issued within a short window into a single batched
+ * backend call, in the style of DataLoader. Concurrent lookups of the same key share
+ * one in-flight request.
+ * <p>
+ * A lookup made while no batch is in flight is sent at once, so an uncontended lookup
+ * pays no batching delay. Only while earlier batches are outstanding are keys held
+ * back, for at most the window or until those batches complete, whichever is first.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class RequestCoalescer<K, V> implements AutoCloseable {
+
+    private final Function<List<K>, CompletableFuture<Map<K, V>>> batchLoader;
+    private final Duration window;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final ReentrantLock batchLock = new ReentrantLock();
+
+    private Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private int batchesInFlight;
+    private boolean closed;
+
+    /**
+     * Create a coalescer
+     *
+     * @param name name of the flush thread
+     * @param batchLoader loads a batch of keys; keys missing from the result complete with null
+     * @param window how long to wait for more keys while an earlier batch is in flight
+     * @param maxBatchSize number of keys that triggers an immediate flush
+     */
+    public RequestCoalescer(String name, Function<List<K>, CompletableFuture<Map<K, V>>> batchLoader,
+                            Duration window, int maxBatchSize) {
+        this.batchLoader = batchLoader;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Load a value, joining an in-flight request for the same key if there is one
+     *
+     * @param key the key to load
+     * @return future completed with the value, or null if the backend did not return it;
+     *         failed with IllegalStateException once the coalescer is closed
+     */
+    public CompletableFuture<V> load(K key) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing.copy();
+        }
+
+        created.whenComplete((value, e) -> inFlight.remove(key, created));
+
+        Map<K, CompletableFuture<V>> batch = null;
+        batchLock.lock();
+        try {
+            if (closed) {
+                // Fails the future, which also removes it from inFlight
+                created.completeExceptionally(new IllegalStateException("Request coalescer is closed"));
+                return created.copy();
+            }
+            pending.put(key, created);
+            if (pending.size() >= maxBatchSize || batchesInFlight == 0) {
+                batch = takePending();
+            } else if (pending.size() == 1) {
+                scheduledFlush = scheduler.schedule(this::flush, window.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            batchLock.unlock();
+        }
+
+        if (batch != null) {
+            dispatch(batch);
+        }
+        return created.copy();
+    }
+
+    /**
+     * Send all queued keys now
+     */
+    public void flush() {
+        Map<K, CompletableFuture<V>> batch;
+        batchLock.lock();
+        try {
+            batch = takePending();
+        } finally {
+            batchLock.unlock();
+        }
+
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    /**
+     * Caller must hold batchLock; a non-empty batch returned must be dispatched
+     */
+    private Map<K, CompletableFuture<V>> takePending() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        Map<K, CompletableFuture<V>> batch = pending;
+        pending = new LinkedHashMap<>();
+        if (!batch.isEmpty()) {
+            batchesInFlight++;
+        }
+        return batch;
+    }
+
+    /**
+     * Send the keys queued behind the batches in flight once the last of them completes,
+     * rather than waiting out the window
+     */
+    private void batchCompleted() {
+        Map<K, CompletableFuture<V>> batch = null;
+        batchLock.lock();
+        try {
+            batchesInFlight--;
+            if (batchesInFlight == 0 && !pending.isEmpty()) {
+                batch = takePending();
+            }
+        } finally {
+            batchLock.unlock();
+        }
+
+        if (batch != null) {
+            dispatch(batch);
+        }
+    }
+
+    private void dispatch(Map<K, CompletableFuture<V>> batch) {
+        CompletableFuture<Map<K, V>> result;
+        try {
+            result = batchLoader.apply(List.copyOf(batch.keySet()));
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+
+        result.whenComplete((values, e) -> {
+            batch.forEach((key, future) -> {
+                if (e != null) {
+                    future.completeExceptionally(e);
+                } else {
+                    future.complete(values.get(key));
+                }
+            });
+            batchCompleted();
+        });
+    }
+
+    /**
+     * Send any queued keys and stop the flush thread
+     */
+    @Override
+    public void close() {
+        batchLock.lock();
+        try {
+            // Checked by load() under the same lock, so nothing is queued after the final flush
+            closed = true;
+        } finally {
+            batchLock.unlock();
+        }
+        flush();
+        scheduler.shutdown();
+    }
+}
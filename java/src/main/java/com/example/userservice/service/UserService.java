@@ -11,13 +11,31 @@ import java.util.List;
 public interface UserService extends EntityService<User, Integer> {
     
     /**
-     * Find users by username pattern
+     * How a username search term is matched
+     */
+    enum MatchMode {
+        CONTAINS,
+        PREFIX
+    }
+    
+    /**
+     * Find users whose username contains the given pattern
      * 
      * @param usernamePattern pattern to search for
      * @return list of matching users
      */
     List<User> findByUsername(String usernamePattern);
     
+    /**
+     * Find users by username pattern, with matching and limit applied by the backend
+     * 
+     * @param usernamePattern pattern to search for
+     * @param matchMode whether to match a prefix or any substring of the username
+     * @param limit maximum number of users to return
+     * @return list of matching users
+     */
+    List<User> findByUsername(String usernamePattern, MatchMode matchMode, int limit);
+    
     /**
      * Find users by exact email address
      * 
@@ -1,32 +1,100 @@
 package com.example.userservice.service;
 
 import com.example.grpc.user.*;
+import com.example.userservice.model.CursorPage;
 import com.example.userservice.model.User;
 
-import io.grpc.ManagedChannel;
+import io.grpc.Channel;
+import io.grpc.Context;
+import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 
 import jakarta.persistence.EntityNotFoundException;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * User service implementation that uses gRPC to communicate with the Mojo database service.
+ * Concurrent lookups by ID are coalesced into BatchGetUsers calls.
  */
 @Service
-public class UserServiceImpl extends AbstractGrpcEntityService<User, Integer, UserServiceGrpc.UserServiceBlockingStub> implements UserService {
+public class UserServiceImpl
+        extends AbstractAsyncGrpcEntityService<User, Integer, UserServiceGrpc.UserServiceBlockingStub, UserServiceGrpc.UserServiceFutureStub>
+        implements UserService {
 
+    private static final int DEFAULT_SEARCH_LIMIT = 100;
+    private static final int STREAM_BATCH_SIZE = 500;
+
+    @Value("${user.batch.enabled:true}")
+    private boolean batchEnabled;
+
+    @Value("${user.batch.window:2ms}")
+    private Duration batchWindow;
+
+    @Value("${user.batch.max-size:100}")
+    private int batchMaxSize;
+
+    private RequestCoalescer<Integer, com.example.grpc.user.User> userLoader;
+
+    /**
+     * Initialize the gRPC stubs and the coalescer that batches lookups by ID
+     */
+    @Override
+    public void init() {
+        super.init();
+        if (batchEnabled) {
+            userLoader = new RequestCoalescer<>("user-batch-loader", this::batchGetUsers, batchWindow, batchMaxSize);
+        }
+    }
+
+    /**
+     * Flush pending lookups and clean up the gRPC channel
+     */
     @Override
-    protected UserServiceGrpc.UserServiceBlockingStub createStub(ManagedChannel channel) {
+    public void destroy() {
+        if (userLoader != null) {
+            userLoader.close();
+        }
+        super.destroy();
+    }
+
+    @Override
+    protected UserServiceGrpc.UserServiceBlockingStub createStub(Channel channel) {
         return UserServiceGrpc.newBlockingStub(channel);
     }
 
     @Override
-    public User findById(Integer id) {
+    protected UserServiceGrpc.UserServiceFutureStub createFutureStub(Channel channel) {
+        return UserServiceGrpc.newFutureStub(channel);
+    }
+
+    @Override
+    protected User copyOf(User user) {
+        return user.copy();
+    }
+
+    @Override
+    protected User fetchById(Integer id) {
+        if (userLoader != null) {
+            try {
+                return fetchByIdAsync(id).join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        
         try {
             GetUserRequest request = GetUserRequest.newBuilder()
                     .setId(id)
@@ -51,6 +119,7 @@ public class UserServiceImpl extends AbstractGrpcEntityService<User, Integer, Us
             ListUsersRequest request = ListUsersRequest.newBuilder()
                     .setPageSize(pageSize)
                     .setPageNumber(pageNumber)
+                    .setSkipTotalCount(true)
                     .build();
             
             ListUsersResponse response = blockingStub.listUsers(request);
@@ -64,15 +133,59 @@ public class UserServiceImpl extends AbstractGrpcEntityService<User, Integer, Us
     }
 
     @Override
-    public int getCount() {
+    public CursorPage<User> findPage(int pageSize, String pageToken) {
         try {
-            ListUsersRequest request = ListUsersRequest.newBuilder()
-                    .setPageSize(1)
-                    .setPageNumber(1)
+            ListUsersRequest.Builder request = ListUsersRequest.newBuilder()
+                    .setPageSize(pageSize)
+                    .setSkipTotalCount(true);
+            if (pageToken != null) {
+                request.setPageToken(pageToken);
+            }
+            
+            ListUsersResponse response = blockingStub.listUsers(request.build());
+            
+            List<User> users = response.getUsersList().stream()
+                    .map(User::fromProto)
+                    .collect(Collectors.toList());
+            String nextPageToken = response.getNextPageToken();
+            return new CursorPage<>(users, nextPageToken.isEmpty() ? null : nextPageToken);
+        } catch (StatusRuntimeException e) {
+            if (e.getStatus().getCode() == Status.Code.INVALID_ARGUMENT) {
+                throw new IllegalArgumentException("Invalid page token: " + pageToken, e);
+            }
+            throw new RuntimeException("Failed to list users: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void streamAll(Consumer<? super User> consumer) {
+        StreamUsersRequest request = StreamUsersRequest.newBuilder()
+                .setBatchSize(STREAM_BATCH_SIZE)
+                .build();
+        
+        // The blocking iterator requests one message at a time, so a slow consumer
+        // holds back the server through gRPC flow control
+        Context.CancellableContext context = Context.current().withCancellation();
+        try {
+            context.run(() -> blockingStub.streamUsers(request)
+                    .forEachRemaining(protoUser -> consumer.accept(User.fromProto(protoUser))));
+        } catch (StatusRuntimeException e) {
+            throw new RuntimeException("Failed to stream users: " + e.getMessage(), e);
+        } finally {
+            // Cancels the call if the consumer stopped early
+            context.cancel(null);
+        }
+    }
+
+    @Override
+    protected int fetchCount() {
+        try {
+            CountUsersRequest request = CountUsersRequest.newBuilder()
+                    .setEstimated(countEstimated)
                     .build();
             
-            ListUsersResponse response = blockingStub.listUsers(request);
-            return response.getTotalCount();
+            CountUsersResponse response = blockingStub.countUsers(request);
+            return (int) Math.min(response.getCount(), Integer.MAX_VALUE);
         } catch (StatusRuntimeException e) {
             throw new RuntimeException("Failed to get user count: " + e.getMessage(), e);
         }
@@ -85,19 +198,11 @@ public class UserServiceImpl extends AbstractGrpcEntityService<User, Integer, Us
                 throw new IllegalArgumentException("Invalid user data");
             }
             
-            CreateUserRequest request = CreateUserRequest.newBuilder()
-                    .setUsername(user.getUsername())
-                    .setEmail(user.getEmail())
-                    .build();
-            
-            UserResponse response = blockingStub.createUser(request);
+            UserResponse response = blockingStub.createUser(toCreateRequest(user));
             
             if (response.hasUser()) {
-                User createdUser = User.fromProto(response.getUser());
-                // Preserve additional fields from the original user
-                createdUser.setUserType(user.getUserType());
-                createdUser.setActive(user.isActive());
-                return createdUser;
+                countChanged();
+                return fromResponse(response, user);
             } else {
                 throw new RuntimeException("Failed to create user: " + response.getErrorMessage());
             }
@@ -117,26 +222,18 @@ public class UserServiceImpl extends AbstractGrpcEntityService<User, Integer, Us
         }
         
         try {
-            UpdateUserRequest request = UpdateUserRequest.newBuilder()
-                    .setId(user.getId())
-                    .setUsername(user.getUsername())
-                    .setEmail(user.getEmail())
-                    .build();
-            
-            UserResponse response = blockingStub.updateUser(request);
+            UserResponse response = blockingStub.updateUser(toUpdateRequest(user));
             
             if (response.hasUser()) {
-                User updatedUser = User.fromProto(response.getUser());
-                // Preserve additional fields
-                updatedUser.setUserType(user.getUserType());
-                updatedUser.setActive(user.isActive());
-                return updatedUser;
+                return fromResponse(response, user);
             } else {
                 throw new EntityNotFoundException("User not found with id: " + user.getId());
             }
         } catch (StatusRuntimeException e) {
             handleGrpcError(e, user.getId());
             return null; // This line won't be reached due to exception in handleGrpcError
+        } finally {
+            evict(user.getId());
         }
     }
 
@@ -148,6 +245,9 @@ public class UserServiceImpl extends AbstractGrpcEntityService<User, Integer, Us
                     .build();
             
             DeleteUserResponse response = blockingStub.deleteUser(request);
+            if (response.getSuccess()) {
+                countChanged();
+            }
             return response.getSuccess();
         } catch (StatusRuntimeException e) {
             String status = e.getStatus().getCode().toString();
@@ -155,25 +255,176 @@ public class UserServiceImpl extends AbstractGrpcEntityService<User, Integer, Us
                 return false;
             }
             throw new RuntimeException("Failed to delete user: " + e.getMessage(), e);
+        } finally {
+            evict(id);
+        }
+    }
+
+    @Override
+    protected CompletableFuture<User> fetchByIdAsync(Integer id) {
+        return loadProtoUser(id)
+                .handle((protoUser, e) -> {
+                    if (e != null) {
+                        handleAsyncGrpcError(e, id);
+                    }
+                    if (protoUser == null) {
+                        throw new EntityNotFoundException("User not found with id: " + id);
+                    }
+                    return User.fromProto(protoUser);
+                });
+    }
+
+    /**
+     * Load a user through the coalescer when batching is enabled, otherwise with a single GetUser call
+     */
+    private CompletableFuture<com.example.grpc.user.User> loadProtoUser(Integer id) {
+        if (userLoader != null) {
+            return userLoader.load(id);
         }
+        
+        GetUserRequest request = GetUserRequest.newBuilder()
+                .setId(id)
+                .build();
+        
+        return toCompletableFuture(futureStub.getUser(request))
+                .thenApply(response -> response.hasUser() ? response.getUser() : null);
+    }
+
+    private CompletableFuture<Map<Integer, com.example.grpc.user.User>> batchGetUsers(List<Integer> ids) {
+        BatchGetUsersRequest request = BatchGetUsersRequest.newBuilder()
+                .addAllIds(ids)
+                .build();
+        
+        return toCompletableFuture(futureStub.batchGetUsers(request))
+                .thenApply(response -> response.getUsersList().stream()
+                        .collect(Collectors.toMap(com.example.grpc.user.User::getId, Function.identity())));
+    }
+
+    @Override
+    public CompletableFuture<List<User>> findAllAsync(int pageSize, int pageNumber) {
+        ListUsersRequest request = ListUsersRequest.newBuilder()
+                .setPageSize(pageSize)
+                .setPageNumber(pageNumber)
+                .setSkipTotalCount(true)
+                .build();
+        
+        return toCompletableFuture(futureStub.listUsers(request))
+                .handle((response, e) -> {
+                    if (e != null) {
+                        throw asyncFailure(e, "Failed to list users");
+                    }
+                    return response.getUsersList().stream()
+                            .map(User::fromProto)
+                            .collect(Collectors.toList());
+                });
+    }
+
+    @Override
+    public CompletableFuture<Integer> getCountAsync() {
+        OptionalInt cached = counter.peek();
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached.getAsInt());
+        }
+        
+        CountUsersRequest request = CountUsersRequest.newBuilder()
+                .setEstimated(countEstimated)
+                .build();
+        
+        return toCompletableFuture(futureStub.countUsers(request))
+                .handle((response, e) -> {
+                    if (e != null) {
+                        throw asyncFailure(e, "Failed to get user count");
+                    }
+                    return (int) Math.min(response.getCount(), Integer.MAX_VALUE);
+                });
+    }
+
+    @Override
+    public CompletableFuture<User> createAsync(User user) {
+        if (!user.validate()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid user data"));
+        }
+        
+        return toCompletableFuture(futureStub.createUser(toCreateRequest(user)))
+                .handle((response, e) -> {
+                    if (e != null) {
+                        throw asyncFailure(e, "Failed to create user");
+                    }
+                    if (!response.hasUser()) {
+                        throw new RuntimeException("Failed to create user: " + response.getErrorMessage());
+                    }
+                    countChanged();
+                    return fromResponse(response, user);
+                });
+    }
+
+    @Override
+    public CompletableFuture<User> updateAsync(User user) {
+        if (user.getId() == null) {
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("User ID cannot be null for update operation"));
+        }
+        
+        if (!user.validate()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid user data"));
+        }
+        
+        return toCompletableFuture(futureStub.updateUser(toUpdateRequest(user)))
+                .handle((response, e) -> {
+                    evict(user.getId());
+                    if (e != null) {
+                        handleAsyncGrpcError(e, user.getId());
+                    }
+                    if (!response.hasUser()) {
+                        throw new EntityNotFoundException("User not found with id: " + user.getId());
+                    }
+                    return fromResponse(response, user);
+                });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteAsync(Integer id) {
+        DeleteUserRequest request = DeleteUserRequest.newBuilder()
+                .setId(id)
+                .build();
+        
+        return toCompletableFuture(futureStub.deleteUser(request))
+                .handle((response, e) -> {
+                    evict(id);
+                    if (e != null) {
+                        StatusRuntimeException grpcError = grpcCause(e);
+                        if (grpcError != null && grpcError.getStatus().getCode() == Status.Code.NOT_FOUND) {
+                            return false;
+                        }
+                        throw asyncFailure(e, "Failed to delete user");
+                    }
+                    if (response.getSuccess()) {
+                        countChanged();
+                    }
+                    return response.getSuccess();
+                });
     }
 
     @Override
     public List<User> findByUsername(String usernamePattern) {
-        // Since our gRPC service doesn't have this endpoint, we'll fetch all users
-        // and filter them in Java. In a production system, we'd add this method to the
-        // gRPC service for better performance.
+        return findByUsername(usernamePattern, MatchMode.CONTAINS, DEFAULT_SEARCH_LIMIT);
+    }
+
+    @Override
+    public List<User> findByUsername(String usernamePattern, MatchMode matchMode, int limit) {
         try {
-            ListUsersRequest request = ListUsersRequest.newBuilder()
-                    .setPageSize(100) // Fetch a reasonable number
-                    .setPageNumber(1)
+            SearchUsersRequest request = SearchUsersRequest.newBuilder()
+                    .setQuery(usernamePattern)
+                    .setMatchMode(matchMode == MatchMode.PREFIX
+                            ? com.example.grpc.user.MatchMode.PREFIX
+                            : com.example.grpc.user.MatchMode.CONTAINS)
+                    .setLimit(limit > 0 ? limit : DEFAULT_SEARCH_LIMIT)
                     .build();
             
-            ListUsersResponse response = blockingStub.listUsers(request);
+            ListUsersResponse response = blockingStub.searchUsers(request);
             
             return response.getUsersList().stream()
                     .map(User::fromProto)
-                    .filter(user -> user.getUsername().contains(usernamePattern))
                     .collect(Collectors.toList());
         } catch (StatusRuntimeException e) {
             throw new RuntimeException("Failed to search users by username: " + e.getMessage(), e);
@@ -182,29 +433,25 @@ public class UserServiceImpl extends AbstractGrpcEntityService<User, Integer, Us
 
     @Override
     public User findByEmail(String email) {
-        // In a production system, we'd add this specific method to the gRPC service
-        // For now, we'll filter users on the client side
         try {
-            ListUsersRequest request = ListUsersRequest.newBuilder()
-                    .setPageSize(100) // Fetch a reasonable number
-                    .setPageNumber(1)
+            GetUserByEmailRequest request = GetUserByEmailRequest.newBuilder()
+                    .setEmail(email)
                     .build();
             
-            ListUsersResponse response = blockingStub.listUsers(request);
+            UserResponse response = blockingStub.getUserByEmail(request);
             
-            return response.getUsersList().stream()
-                    .map(User::fromProto)
-                    .filter(user -> user.getEmail().equals(email))
-                    .findFirst()
-                    .orElse(null);
+            return response.hasUser() ? User.fromProto(response.getUser()) : null;
         } catch (StatusRuntimeException e) {
+            if (e.getStatus().getCode() == Status.Code.NOT_FOUND) {
+                return null;
+            }
             throw new RuntimeException("Failed to find user by email: " + e.getMessage(), e);
         }
     }
 
     @Override
     public List<User> findByUserType(User.UserType userType) {
-        // Fetch users and filter by type on the client side
+        // The backend does not store user types, so this still filters on the client side
         List<User> allUsers = findAll(100, 1);
         
         return allUsers.stream()
@@ -225,4 +472,29 @@ public class UserServiceImpl extends AbstractGrpcEntityService<User, Integer, Us
         user.setUserType(userType);
         return update(user);
     }
-}
\ No newline at end of file
+
+    private static CreateUserRequest toCreateRequest(User user) {
+        return CreateUserRequest.newBuilder()
+                .setUsername(user.getUsername())
+                .setEmail(user.getEmail())
+                .build();
+    }
+
+    private static UpdateUserRequest toUpdateRequest(User user) {
+        return UpdateUserRequest.newBuilder()
+                .setId(user.getId())
+                .setUsername(user.getUsername())
+                .setEmail(user.getEmail())
+                .build();
+    }
+
+    /**
+     * Map a create/update response, preserving the fields the proto does not carry
+     */
+    private static User fromResponse(UserResponse response, User user) {
+        User result = User.fromProto(response.getUser());
+        result.setUserType(user.getUserType());
+        result.setActive(user.isActive());
+        return result;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.userservice.load;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Closed-loop HTTP load generator. Each client sends a request, waits for the
+ * response and sends the next one straight away, so the offered concurrency is
+ * fixed and throughput shows how much of it the server can serve at once.
+ * Requests are sent asynchronously, so the driver needs no thread per client.
+ */
+final class LoadDriver {
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    /**
+     * Run one load step
+     *
+     * @param uris URI for a client's next request, by client index
+     * @param concurrency number of clients
+     * @param warmup time before latencies are recorded
+     * @param duration time over which latencies are recorded
+     */
+    Result run(IntFunction<URI> uris, int concurrency, Duration warmup, Duration duration)
+            throws InterruptedException {
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        Step step = new Step(uris, measureFrom, end, concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            step.next(i);
+        }
+        if (!step.done.await(warmup.plus(duration).plusSeconds(60).toMillis(), TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException("Clients did not finish; the server stopped responding");
+        }
+        return step.result(concurrency, duration);
+    }
+
+    private final class Step {
+        final IntFunction<URI> uris;
+        final long measureFrom;
+        final long end;
+        final CountDownLatch done;
+        final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        final AtomicLong errors = new AtomicLong();
+
+        Step(IntFunction<URI> uris, long measureFrom, long end, int concurrency) {
+            this.uris = uris;
+            this.measureFrom = measureFrom;
+            this.end = end;
+            this.done = new CountDownLatch(concurrency);
+        }
+
+        void next(int clientIndex) {
+            long start = System.nanoTime();
+            if (start >= end) {
+                done.countDown();
+                return;
+            }
+            HttpRequest request = HttpRequest.newBuilder(uris.apply(clientIndex))
+                    .timeout(Duration.ofSeconds(30))
+                    .GET()
+                    .build();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, e) -> {
+                if (start >= measureFrom) {
+                    if (e != null || response.statusCode() != 200) {
+                        errors.incrementAndGet();
+                    } else {
+                        latencies.add(System.nanoTime() - start);
+                    }
+                }
+                next(clientIndex);
+            });
+        }
+
+        Result result(int concurrency, Duration duration) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            return new Result(concurrency, sorted.length, errors.get(),
+                    sorted.length / (duration.toNanos() / 1e9),
+                    percentileMillis(sorted, 0.50), percentileMillis(sorted, 0.99));
+        }
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    /**
+     * Outcome of one load step
+     */
+    static final class Result {
+        final int concurrency;
+        final long requests;
+        final long errors;
+        final double throughput;
+        final double p50Millis;
+        final double p99Millis;
+
+        Result(int concurrency, long requests, long errors, double throughput, double p50Millis, double p99Millis) {
+            this.concurrency = concurrency;
+            this.requests = requests;
+            this.errors = errors;
+            this.throughput = throughput;
+            this.p50Millis = p50Millis;
+            this.p99Millis = p99Millis;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.userservice.load;
+
+import com.example.grpc.user.BatchGetUsersRequest;
+import com.example.grpc.user.BatchGetUsersResponse;
+import com.example.grpc.user.CountUsersRequest;
+import com.example.grpc.user.CountUsersResponse;
+import com.example.grpc.user.GetUserRequest;
+import com.example.grpc.user.User;
+import com.example.grpc.user.UserResponse;
+import com.example.grpc.user.UserServiceGrpc;
+
+import io.grpc.Grpc;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.Server;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process stand-in for the Mojo database service. Answers GetUser, BatchGetUsers
+ * and CountUsers after a fixed delay that models database latency. Responses are
+ * completed from a timer rather than a sleeping thread, so the stub itself never
+ * limits how many calls can be outstanding.
+ */
+class StubUserBackend implements AutoCloseable {
+
+    private final Server server;
+    private final ScheduledExecutorService timer;
+
+    private StubUserBackend(Server server, ScheduledExecutorService timer) {
+        this.server = server;
+        this.timer = timer;
+    }
+
+    /**
+     * Start the stub on an ephemeral loopback port
+     *
+     * @param latency delay before each response
+     */
+    static StubUserBackend start(Duration latency) throws IOException {
+        ScheduledExecutorService timer = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "stub-backend-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Server server = Grpc.newServerBuilderForPort(0, InsecureServerCredentials.create())
+                .addService(new Service(timer, latency.toNanos()))
+                .build()
+                .start();
+        return new StubUserBackend(server, timer);
+    }
+
+    int getPort() {
+        return server.getPort();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        server.shutdownNow();
+        server.awaitTermination(5, TimeUnit.SECONDS);
+        timer.shutdownNow();
+    }
+
+    private static User user(int id) {
+        return User.newBuilder()
+                .setId(id)
+                .setUsername("user" + id)
+                .setEmail("user" + id + "@example.com")
+                .build();
+    }
+
+    private static final class Service extends UserServiceGrpc.UserServiceImplBase {
+
+        private final ScheduledExecutorService timer;
+        private final long latencyNanos;
+
+        Service(ScheduledExecutorService timer, long latencyNanos) {
+            this.timer = timer;
+            this.latencyNanos = latencyNanos;
+        }
+
+        @Override
+        public void getUser(GetUserRequest request, StreamObserver<UserResponse> responseObserver) {
+            respond(responseObserver, UserResponse.newBuilder().setUser(user(request.getId())).build());
+        }
+
+        @Override
+        public void batchGetUsers(BatchGetUsersRequest request, StreamObserver<BatchGetUsersResponse> responseObserver) {
+            BatchGetUsersResponse.Builder response = BatchGetUsersResponse.newBuilder();
+            request.getIdsList().forEach(id -> response.addUsers(user(id)));
+            respond(responseObserver, response.build());
+        }
+
+        @Override
+        public void countUsers(CountUsersRequest request, StreamObserver<CountUsersResponse> responseObserver) {
+            respond(responseObserver, CountUsersResponse.newBuilder().setCount(1_000_000).build());
+        }
+
+        private <R> void respond(StreamObserver<R> responseObserver, R response) {
+            timer.schedule(() -> {
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
+            }, latencyNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
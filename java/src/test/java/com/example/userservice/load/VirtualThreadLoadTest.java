@@ -0,0 +1,93 @@
+package com.example.userservice.load;
+
+import com.example.userservice.UserServiceApplication;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the blocking GET /api/users/{id} path with Tomcat and gRPC callbacks on
+ * platform threads against the same path on virtual threads. The backend is a stub
+ * with a fixed latency, so a server that can keep every request in flight serves
+ * concurrency / latency requests per second. On platform threads throughput stops
+ * growing at the Tomcat pool size and p99 climbs as requests queue for a thread;
+ * that knee is the concurrency ceiling.
+ * <p>
+ * Excluded from the default build. Run with {@code mvn test -Pload-test}; the
+ * virtual-thread column needs Java 21 or later and is left empty on older runtimes.
+ */
+@Tag("load")
+class VirtualThreadLoadTest {
+
+    private static final Duration BACKEND_LATENCY = Duration.ofMillis(50);
+    private static final int TOMCAT_MAX_THREADS = 200;
+    private static final int[] CONCURRENCY = {50, 200, 400, 800, 1600};
+    private static final Duration WARMUP = Duration.ofSeconds(3);
+    private static final Duration MEASURE = Duration.ofSeconds(10);
+
+    @Test
+    void compareThreadingModes() throws Exception {
+        try (StubUserBackend backend = StubUserBackend.start(BACKEND_LATENCY)) {
+            List<LoadDriver.Result> platform = runSteps(backend, false);
+            List<LoadDriver.Result> virtual = Runtime.version().feature() >= 21
+                    ? runSteps(backend, true)
+                    : List.of();
+
+            report(platform, virtual);
+            platform.forEach(result -> assertEquals(0, result.errors, "Platform-thread requests failed"));
+            virtual.forEach(result -> assertEquals(0, result.errors, "Virtual-thread requests failed"));
+        }
+    }
+
+    private List<LoadDriver.Result> runSteps(StubUserBackend backend, boolean virtualThreads) throws Exception {
+        // Caching and batching are off so every request makes one blocking GetUser call
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(UserServiceApplication.class)
+                .properties(
+                        "server.port=0",
+                        "server.tomcat.threads.max=" + TOMCAT_MAX_THREADS,
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "grpc.server.host=localhost",
+                        "grpc.server.port=" + backend.getPort(),
+                        "entity.cache.enabled=false",
+                        "user.batch.enabled=false")
+                .run()) {
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            LoadDriver driver = new LoadDriver();
+            List<LoadDriver.Result> results = new ArrayList<>();
+            for (int concurrency : CONCURRENCY) {
+                results.add(driver.run(client -> URI.create("http://localhost:" + port + "/api/users/" + (client + 1)),
+                        concurrency, WARMUP, MEASURE));
+            }
+            return results;
+        }
+    }
+
+    private static void report(List<LoadDriver.Result> platform, List<LoadDriver.Result> virtual) {
+        System.out.printf("Backend latency %d ms, Tomcat max threads %d, ideal throughput = concurrency / latency%n",
+                BACKEND_LATENCY.toMillis(), TOMCAT_MAX_THREADS);
+        System.out.printf("%11s | %28s | %28s%n", "", "platform threads", "virtual threads");
+        System.out.printf("%11s | %10s %8s %8s | %10s %8s %8s%n",
+                "concurrency", "req/s", "p50 ms", "p99 ms", "req/s", "p50 ms", "p99 ms");
+        for (int i = 0; i < platform.size(); i++) {
+            LoadDriver.Result p = platform.get(i);
+            String virtualColumns = i < virtual.size()
+                    ? String.format("%10.0f %8.1f %8.1f", virtual.get(i).throughput, virtual.get(i).p50Millis,
+                            virtual.get(i).p99Millis)
+                    : String.format("%28s", "needs Java 21");
+            System.out.printf("%11d | %10.0f %8.1f %8.1f | %s%n",
+                    p.concurrency, p.throughput, p.p50Millis, p.p99Millis, virtualColumns);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.modular.database;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps liveness checks off the statement path. A connection is checked in the
+ * background once it has been idle for the check interval; while in use, its own
+ * statements show whether it is alive. A statement that fails with an I/O error
+ * marks the connection suspect, and only then is it checked before its next use.
+ */
+final class ConnectionHealthMonitor implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionHealthMonitor.class);
+    // One daemon thread shared by every connection
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "database-health");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final DatabaseConnector connector;
+    private final ReentrantLock scheduleLock = new ReentrantLock();
+    private final AtomicLong failedChecks = new AtomicLong(0);
+    private final AtomicLong suspectMarks = new AtomicLong(0);
+    private ScheduledFuture<?> task;
+    private volatile boolean closed = false;
+    private volatile boolean suspect = false;
+    private volatile long lastUsedNanos = System.nanoTime();
+    private volatile Instant lastValidated;
+
+    // Configuration options
+    private volatile Duration idleInterval = Duration.ofSeconds(30); // zero disables background checks
+
+    ConnectionHealthMonitor(DatabaseConnector connector) {
+        this.connector = connector;
+    }
+
+    /**
+     * Starts background checks for a newly installed connection if they are not
+     * already running, including on a connector reconnected after close()
+     */
+    void start() {
+        scheduleLock.lock();
+        try {
+            closed = false;
+            schedule();
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    /**
+     * Caller must hold scheduleLock
+     */
+    private void schedule() {
+        if (task == null && !closed && !idleInterval.isZero()) {
+            long interval = idleInterval.toMillis();
+            task = SCHEDULER.scheduleWithFixedDelay(this::run, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void run() {
+        boolean idle = System.nanoTime() - lastUsedNanos >= idleInterval.toNanos();
+        if (!idle && !suspect) {
+            return;
+        }
+
+        try {
+            connector.checkHealth();
+        } catch (RuntimeException e) {
+            // Keep the schedule alive; an exception would cancel it
+            logger.error("Connection health check failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Records that the connection is being used for a statement
+     */
+    void markUsed() {
+        lastUsedNanos = System.nanoTime();
+    }
+
+    /**
+     * Flags the connection for a check before its next use after an I/O error
+     */
+    void markSuspect() {
+        if (!suspect) {
+            suspect = true;
+            suspectMarks.incrementAndGet();
+            logger.warn("Connection marked suspect after an I/O error");
+        }
+    }
+
+    boolean isSuspect() {
+        return suspect;
+    }
+
+    /**
+     * Records a successful check, or a freshly opened connection
+     */
+    void recordValid() {
+        suspect = false;
+        lastValidated = Instant.now();
+    }
+
+    void recordFailure() {
+        failedChecks.incrementAndGet();
+    }
+
+    /**
+     * @return When the connection last passed a check, or null if it never has
+     */
+    Instant getLastValidated() {
+        return lastValidated;
+    }
+
+    long getFailedChecks() {
+        return failedChecks.get();
+    }
+
+    long getSuspectMarks() {
+        return suspectMarks.get();
+    }
+
+    /**
+     * Changes the check interval, rescheduling checks if the connector is connected.
+     * Zero stops them.
+     */
+    void setIdleInterval(Duration idleInterval) {
+        if (idleInterval.isNegative()) {
+            throw new IllegalArgumentException("Health check interval must not be negative");
+        }
+        scheduleLock.lock();
+        try {
+            this.idleInterval = idleInterval;
+            if (task != null) {
+                task.cancel(false);
+                task = null;
+            }
+            if (connector.isConnected()) {
+                schedule();
+            }
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    /**
+     * Stops background checks; the connector is being closed
+     */
+    @Override
+    public void close() {
+        scheduleLock.lock();
+        try {
+            closed = true;
+            if (task != null) {
+                task.cancel(false);
+                task = null;
+            }
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+}
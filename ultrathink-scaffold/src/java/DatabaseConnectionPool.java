@@ -0,0 +1,489 @@
+/**
+ * Java Database Connection Pool
+ * Shares a bounded set of DatabaseConnector instances between threads
+ */
+package com.modular.database;
+
+import com.modular.database.DatabaseConnector.DatabaseConnectionException;
+import com.modular.database.DatabaseConnector.DatabaseException;
+import com.modular.database.DatabaseConnector.DatabaseStateException;
+import com.modular.database.DatabaseConnector.QueryResult;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread-safe pool of database connections. Each borrowed connection is used by one
+ * thread at a time, so concurrent queries scale with the number of connections
+ * instead of queuing on a single connection lock.
+ */
+public class DatabaseConnectionPool implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseConnectionPool.class);
+    private final String connectionString;
+    private final int minSize;
+    private final int maxSize;
+
+    // Fair, so waiting threads are served in arrival order
+    private final Semaphore permits;
+    // Most recently returned first, so idle connections age at the tail and get evicted
+    private final LinkedBlockingDeque<IdleConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger totalConnections = new AtomicInteger(0);
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final ScheduledExecutorService maintenance;
+
+    // Configuration options
+    private volatile Duration borrowTimeout = Duration.ofSeconds(30);
+    private volatile Duration idleTimeout = Duration.ofMinutes(10);
+    private volatile Duration leakDetectionThreshold = Duration.ZERO; // disabled
+    private volatile Duration maintenanceInterval = Duration.ofSeconds(30);
+
+    /**
+     * Creates a new connection pool
+     * @param connectionString The connection string to the database
+     * @param minSize Number of connections kept open even when idle
+     * @param maxSize Maximum number of open connections
+     */
+    public DatabaseConnectionPool(String connectionString, int minSize, int maxSize) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Pool size must satisfy 0 <= minSize <= maxSize and maxSize >= 1");
+        }
+        this.connectionString = connectionString;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.permits = new Semaphore(maxSize, true);
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "database-pool-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens the minimum number of connections and starts idle eviction and leak detection
+     * @throws DatabaseConnectionException if an initial connection cannot be opened
+     */
+    public void start() throws DatabaseConnectionException {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+
+        logger.info("Starting connection pool with minSize={}, maxSize={}", minSize, maxSize);
+        while (totalConnections.get() < minSize && openIdleConnection()) {
+            // Keep opening until the minimum is reached or every permit is in use
+        }
+
+        long interval = maintenanceInterval.toMillis();
+        maintenance.scheduleWithFixedDelay(this::maintain, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting up to the configured borrow timeout
+     * @return A connection that must be closed to return it to the pool
+     * @throws DatabaseConnectionException if no connection becomes available in time
+     */
+    public PooledConnection borrow() throws DatabaseException {
+        return borrow(borrowTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting up to the given timeout. Idle connections are
+     * validated before being handed out and replaced if they are no longer usable.
+     * @param timeout Maximum time to wait
+     * @param unit Unit of the timeout
+     * @return A connection that must be closed to return it to the pool
+     * @throws DatabaseConnectionException if no connection becomes available in time
+     */
+    public PooledConnection borrow(long timeout, TimeUnit unit) throws DatabaseException {
+        checkOpen();
+
+        try {
+            if (!permits.tryAcquire(timeout, unit)) {
+                logger.warn("Timed out waiting for a connection, {} threads waiting", permits.getQueueLength());
+                throw new DatabaseConnectionException("Timed out waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseConnectionException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            checkOpen();
+            DatabaseConnector connector = takeValidConnection();
+            PooledConnection connection = new PooledConnection(connector, leakDetectionThreshold.isZero());
+            borrowed.add(connection);
+            logger.trace("Borrowed connection, {} active, {} idle", borrowed.size(), idle.size());
+            return connection;
+        } catch (DatabaseException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private DatabaseConnector takeValidConnection() throws DatabaseConnectionException {
+        IdleConnection candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            if (candidate.connector.isValid()) {
+                return candidate.connector;
+            }
+            logger.warn("Discarding invalid pooled connection");
+            discard(candidate.connector);
+        }
+        return openConnection();
+    }
+
+    private DatabaseConnector openConnection() throws DatabaseConnectionException {
+        totalConnections.incrementAndGet();
+        DatabaseConnector connector = new DatabaseConnector(connectionString);
+        try {
+            connector.connect();
+            logger.debug("Opened pooled connection, {} total", totalConnections.get());
+            return connector;
+        } catch (DatabaseConnectionException | RuntimeException e) {
+            totalConnections.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void discard(DatabaseConnector connector) {
+        totalConnections.decrementAndGet();
+        connector.close();
+    }
+
+    private void release(PooledConnection connection) {
+        if (!borrowed.remove(connection)) {
+            return;
+        }
+
+        try {
+            // A cursor left open would hold the connection, and its transaction, for the next borrower
+            if (closed.get() || connection.broken || !connection.connector.closeActiveCursor()) {
+                discard(connection.connector);
+            } else {
+                idle.offerFirst(new IdleConnection(connection.connector));
+            }
+        } finally {
+            permits.release();
+        }
+        logger.trace("Returned connection, {} active, {} idle", borrowed.size(), idle.size());
+    }
+
+    /**
+     * Periodic task: evicts connections idle for longer than the idle timeout,
+     * tops the pool back up to its minimum size and reports leaked connections
+     */
+    private void maintain() {
+        try {
+            evictIdleConnections();
+            fillToMinimum();
+            detectLeaks();
+        } catch (RuntimeException e) {
+            logger.error("Connection pool maintenance failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void evictIdleConnections() {
+        long cutoff = System.nanoTime() - idleTimeout.toNanos();
+        Iterator<IdleConnection> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext() && totalConnections.get() > minSize) {
+            IdleConnection candidate = oldestFirst.next();
+            if (candidate.idleSince - cutoff > 0) {
+                break;
+            }
+            // A concurrent borrow may have taken it already
+            if (idle.removeLastOccurrence(candidate)) {
+                logger.debug("Evicting connection idle for longer than {}", idleTimeout);
+                discard(candidate.connector);
+            }
+        }
+    }
+
+    private void fillToMinimum() {
+        try {
+            while (!closed.get() && totalConnections.get() < minSize && openIdleConnection()) {
+                // Keep opening until the minimum is reached or every permit is in use
+            }
+        } catch (DatabaseConnectionException e) {
+            logger.warn("Failed to restore minimum pool size: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Opens a connection straight into the idle queue. Like a borrower, it holds a
+     * permit while opening, so connections opened alongside active borrowers never
+     * take the pool past maxSize.
+     * @return false if no permit was free, in which case borrowers are using the
+     *         whole pool and will open connections themselves as needed
+     */
+    private boolean openIdleConnection() throws DatabaseConnectionException {
+        if (!permits.tryAcquire()) {
+            return false;
+        }
+        try {
+            idle.offerLast(new IdleConnection(openConnection()));
+            return true;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void detectLeaks() {
+        Duration threshold = leakDetectionThreshold;
+        if (threshold.isZero()) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        for (PooledConnection connection : borrowed) {
+            if (!connection.leakReported && now - connection.borrowedAt > threshold.toNanos()) {
+                connection.leakReported = true;
+                logger.warn("Connection borrowed {} ms ago has not been returned, possible leak",
+                            TimeUnit.NANOSECONDS.toMillis(now - connection.borrowedAt),
+                            connection.borrowSite);
+            }
+        }
+    }
+
+    private void checkOpen() throws DatabaseStateException {
+        if (!started.get()) {
+            throw new DatabaseStateException("Connection pool has not been started");
+        }
+        if (closed.get()) {
+            throw new DatabaseStateException("Connection pool is closed");
+        }
+    }
+
+    /**
+     * @return Number of open connections, borrowed or idle
+     */
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    /**
+     * @return Number of connections currently borrowed
+     */
+    public int getActiveConnections() {
+        return borrowed.size();
+    }
+
+    /**
+     * @return Number of connections waiting in the pool
+     */
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    /**
+     * @return Approximate number of threads waiting to borrow a connection
+     */
+    public int getWaitingThreads() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * @param borrowTimeout How long borrow() waits for a free connection
+     */
+    public void setBorrowTimeout(Duration borrowTimeout) {
+        this.borrowTimeout = borrowTimeout;
+    }
+
+    /**
+     * @param idleTimeout How long a connection above the minimum may stay idle before it is closed
+     */
+    public void setIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * @param leakDetectionThreshold How long a connection may stay borrowed before a leak
+     *                               is reported with its borrow site; zero disables detection
+     */
+    public void setLeakDetectionThreshold(Duration leakDetectionThreshold) {
+        this.leakDetectionThreshold = leakDetectionThreshold;
+    }
+
+    /**
+     * @param maintenanceInterval How often eviction and leak detection run; takes effect on start()
+     */
+    public void setMaintenanceInterval(Duration maintenanceInterval) {
+        this.maintenanceInterval = maintenanceInterval;
+    }
+
+    /**
+     * Closes all idle connections. Borrowed connections are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        logger.info("Closing connection pool");
+        maintenance.shutdownNow();
+        IdleConnection candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            discard(candidate.connector);
+        }
+        if (!borrowed.isEmpty()) {
+            logger.warn("Connection pool closed with {} connections still borrowed", borrowed.size());
+        }
+    }
+
+    /**
+     * Idle connection with the time it was returned to the pool
+     */
+    private static final class IdleConnection {
+        final DatabaseConnector connector;
+        final long idleSince = System.nanoTime();
+
+        IdleConnection(DatabaseConnector connector) {
+            this.connector = connector;
+        }
+    }
+
+    /**
+     * Connection on loan from the pool. Closing it returns the connection to the pool;
+     * a connection that failed with a connection error is discarded instead.
+     */
+    public final class PooledConnection implements AutoCloseable {
+        private final DatabaseConnector connector;
+        private final long borrowedAt = System.nanoTime();
+        private final Exception borrowSite;
+        private final AtomicBoolean returned = new AtomicBoolean(false);
+        private volatile boolean broken = false;
+        private volatile boolean leakReported = false;
+
+        private PooledConnection(DatabaseConnector connector, boolean skipBorrowSite) {
+            this.connector = connector;
+            // Capturing a stack trace is only worth its cost when leaks are being tracked
+            this.borrowSite = skipBorrowSite ? null : new Exception("Connection borrowed here");
+        }
+
+        /**
+         * @see DatabaseConnector#query(String)
+         */
+        public QueryResult query(String sql) throws DatabaseException {
+            checkReturned();
+            try {
+                return connector.query(sql);
+            } catch (DatabaseConnectionException e) {
+                broken = true;
+                throw e;
+            }
+        }
+
+        /**
+         * @see DatabaseConnector#execute(String)
+         */
+        public int execute(String sql) throws DatabaseException {
+            checkReturned();
+            try {
+                return connector.execute(sql);
+            } catch (DatabaseConnectionException e) {
+                broken = true;
+                throw e;
+            }
+        }
+
+        /**
+         * @see DatabaseConnector#executeBatch(List)
+         */
+        public int executeBatch(List<String> statements) throws DatabaseException {
+            checkReturned();
+            try {
+                return connector.executeBatch(statements);
+            } catch (DatabaseConnectionException e) {
+                broken = true;
+                throw e;
+            }
+        }
+
+        /**
+         * @see DatabaseConnector#copyIn(String, List, ReadableByteChannel, DatabaseConnector.CopyFormat)
+         */
+        public long copyIn(String table, List<String> columns, ReadableByteChannel source,
+                           DatabaseConnector.CopyFormat format) throws DatabaseException {
+            checkReturned();
+            try {
+                return connector.copyIn(table, columns, source, format);
+            } catch (DatabaseConnectionException e) {
+                broken = true;
+                throw e;
+            }
+        }
+
+        /**
+         * @see DatabaseConnector#copyOut(String, WritableByteChannel, DatabaseConnector.CopyFormat)
+         */
+        public long copyOut(String query, WritableByteChannel sink,
+                            DatabaseConnector.CopyFormat format) throws DatabaseException {
+            checkReturned();
+            try {
+                return connector.copyOut(query, sink, format);
+            } catch (DatabaseConnectionException e) {
+                broken = true;
+                throw e;
+            }
+        }
+
+        /**
+         * The statement must be closed before the connection is returned
+         * @see DatabaseConnector#prepare(String)
+         */
+        public PreparedStatement prepare(String sql) throws DatabaseException {
+            checkReturned();
+            try {
+                return connector.prepare(sql);
+            } catch (DatabaseConnectionException e) {
+                broken = true;
+                throw e;
+            }
+        }
+
+        /**
+         * The cursor should be closed before the connection is returned; one still
+         * open then is closed, or the connection discarded if that fails
+         * @see DatabaseConnector#openCursor(String, int)
+         */
+        public DatabaseConnector.ResultCursor openCursor(String sql, int fetchSize) throws DatabaseException {
+            checkReturned();
+            try {
+                return connector.openCursor(sql, fetchSize);
+            } catch (DatabaseConnectionException e) {
+                broken = true;
+                throw e;
+            }
+        }
+
+        private void checkReturned() throws DatabaseStateException {
+            if (returned.get()) {
+                throw new DatabaseStateException("Connection has been returned to the pool");
+            }
+        }
+
+        /**
+         * Returns the connection to the pool
+         */
+        @Override
+        public void close() {
+            if (returned.compareAndSet(false, true)) {
+                release(this);
+            }
+        }
+    }
+}
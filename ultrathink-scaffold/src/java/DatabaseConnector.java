@@ -6,16 +6,37 @@ package com.modular.database;
 
 import com.modular.magic.Interop;
 import com.modular.magic.MojoAdapter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.ArrayList;
 import java.util.HashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Thread-safe and memory-safe database connector for Java
@@ -23,16 +44,50 @@ import org.slf4j.LoggerFactory;
  */
 public class DatabaseConnector implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseConnector.class);
+    // Parameter sets handed to the native layer per pipelined batch exchange
+    private static final int BATCH_CHUNK_SIZE = 1000;
+    // Bytes moved across the native boundary per COPY chunk
+    private static final int COPY_CHUNK_BYTES = 64 * 1024;
+    // Limit on remembered shapes that failed to prepare
+    private static final int MAX_UNPARAMETERIZABLE_SHAPES = 1024;
+    // libpq PQTRANS_IDLE: connected and outside any transaction block
+    private static final int TRANSACTION_IDLE = 0;
     private final String connectionString;
     private final ReentrantLock connectionLock = new ReentrantLock();
     private final AtomicBoolean isConnected = new AtomicBoolean(false);
     private int connectionHandle = 0;
+    // Server-side cursor currently holding the connection, guarded by connectionLock
+    private final Condition cursorClosed = connectionLock.newCondition();
+    private CursorState activeCursor;
+    private int cursorCounter = 0;
+    // SQLSTATE read by the last lastError() call, guarded by connectionLock
+    private String lastSqlState;
+    // Idle prepared statements by SQL text in LRU order, guarded by connectionLock
+    private final LinkedHashMap<String, PreparedStatement.Handle> statementCache = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong statementCacheHits = new AtomicLong(0);
+    private final AtomicLong statementCacheMisses = new AtomicLong(0);
+    private final AtomicLong statementCacheEvictions = new AtomicLong(0);
+    // Snapshots served by queryCached(), disabled until given a capacity
+    private final QueryResultCache resultCache = new QueryResultCache();
+    // Parameterized shapes the server would not prepare; these run inline
+    private final Set<String> unparameterizableShapes = ConcurrentHashMap.newKeySet();
+    private final QueryPipeline pipeline = new QueryPipeline(this);
+    // Live result and statement handles on this connection
+    private final NativeHandleRegistry handleRegistry = new NativeHandleRegistry();
+    // Background reconnects and fail-fast circuit breaker
+    private final ReconnectSupervisor reconnectSupervisor = new ReconnectSupervisor(this);
+    // Background liveness checks, so statements need none
+    private final ConnectionHealthMonitor health = new ConnectionHealthMonitor(this);
     
     // Configuration options
     private int connectionTimeout = 30; // seconds
     private int queryTimeout = 60; // seconds
     private int maxRetries = 3;
     private boolean autoReconnect = true;
+    private int fetchSize = 1000; // rows per cursor round trip
+    private int statementCacheSize = 64; // idle prepared statements kept, 0 disables
+    private volatile Duration cursorWaitTimeout = Duration.ofSeconds(30);
+    private volatile boolean autoParameterize = false;
     
     /**
      * Creates a new database connector
@@ -45,8 +100,11 @@ public class DatabaseConnector implements AutoCloseable {
     }
     
     /**
-     * Connects to the database with thread safety
-     * @throws DatabaseConnectionException if connection fails
+     * Connects to the database with thread safety, retrying with jittered exponential
+     * backoff. The lock is not held while connecting or backing off. A connector
+     * can be connected again after close().
+     * @throws DatabaseConnectionException if connection fails, or the connector is
+     *         closed by another thread while connecting
      */
     public void connect() throws DatabaseConnectionException {
         // Only lock if we're not already connected
@@ -55,57 +113,96 @@ public class DatabaseConnector implements AutoCloseable {
             return;
         }
         
+        logger.info("Establishing database connection");
+        // Taking the lock orders re-arming against a concurrent close()
         connectionLock.lock();
         try {
-            // Double-check after acquiring lock
-            if (isConnected.get()) {
-                return;
+            reconnectSupervisor.reset();
+        } finally {
+            connectionLock.unlock();
+        }
+        Exception lastException = null;
+        
+        // Connect and back off without holding the lock, so other threads fail fast
+        for (int attempt = 1; attempt <= maxRetries; attempt++) {
+            int handle = 0;
+            try {
+                handle = Interop.createConnection(connectionString);
+                if (handle <= 0) {
+                    lastException = new DatabaseConnectionException("Failed to connect to database", null);
+                    logger.warn("Connection attempt {} failed", attempt);
+                }
+            } catch (Exception e) {
+                lastException = e;
+                logger.warn("Connection attempt {} failed: {}", attempt, e.getMessage());
             }
             
-            logger.info("Establishing database connection");
-            int retryCount = 0;
-            Exception lastException = null;
+            if (handle > 0) {
+                installConnection(handle);
+                // installConnection drops the new connection if close() ran meanwhile
+                if (!isConnected.get()) {
+                    throw new DatabaseConnectionException("Connector was closed while connecting");
+                }
+                logger.info("Database connection established successfully");
+                return;
+            }
             
-            while (retryCount < maxRetries) {
+            if (attempt < maxRetries) {
                 try {
-                    int handle = Interop.createConnection(connectionString);
-                    if (handle <= 0) {
-                        lastException = new DatabaseConnectionException("Failed to connect to database", null);
-                        retryCount++;
-                        logger.warn("Connection attempt {} failed", retryCount);
-                        if (retryCount < maxRetries) {
-                            Thread.sleep(1000 * retryCount); // Exponential backoff
-                        }
-                        continue;
-                    }
-                    
-                    connectionHandle = handle;
-                    isConnected.set(true);
-                    logger.info("Database connection established successfully");
-                    return;
-                } catch (Exception e) {
-                    lastException = e;
-                    retryCount++;
-                    logger.warn("Connection attempt {} failed: {}", retryCount, e.getMessage());
-                    if (retryCount < maxRetries) {
-                        try {
-                            Thread.sleep(1000 * retryCount); // Exponential backoff
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                            throw new DatabaseConnectionException("Connection interrupted", ie);
-                        }
-                    }
+                    Thread.sleep(reconnectSupervisor.backoffMillis(attempt));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new DatabaseConnectionException("Connection interrupted", ie);
                 }
             }
-            
-            logger.error("Failed to connect to database after {} attempts", maxRetries);
-            throw new DatabaseConnectionException("Failed to connect to database after " + maxRetries + " attempts", 
-                                                 lastException);
+        }
+        
+        logger.error("Failed to connect to database after {} attempts", maxRetries);
+        throw new DatabaseConnectionException("Failed to connect to database after " + maxRetries + " attempts", 
+                                             lastException);
+    }
+    
+    /**
+     * Makes a freshly opened native connection the current one. If another thread
+     * connected first, the new connection is closed and the existing one kept; if
+     * the connector was closed meanwhile, it is closed and the connector stays down.
+     */
+    private void installConnection(int handle) {
+        connectionLock.lock();
+        try {
+            if (isConnected.get() || reconnectSupervisor.isClosed()) {
+                Interop.closeConnection(handle);
+                return;
+            }
+            connectionHandle = handle;
+            isConnected.set(true);
+            reconnectSupervisor.connectionRestored();
+            health.recordValid();
+            health.start();
+            pipeline.reopen();
         } finally {
             connectionLock.unlock();
         }
     }
     
+    /**
+     * Single reconnect attempt made by the reconnect supervisor; never sleeps
+     * @return true if the connector is connected afterwards
+     */
+    boolean reopen() {
+        try {
+            int handle = Interop.createConnection(connectionString);
+            if (handle <= 0) {
+                return false;
+            }
+            installConnection(handle);
+            return isConnected.get();
+        } catch (Exception e) {
+            logger.debug("Reconnect attempt failed: {}", e.getMessage());
+            return false;
+        }
+    }
+    
     /**
      * Thread-safe query execution
      * @param sql SQL query to execute
@@ -115,24 +212,29 @@ public class DatabaseConnector implements AutoCloseable {
     public QueryResult query(String sql) throws DatabaseException {
         if (!isConnected.get()) {
             logger.error("Attempted to execute query while not connected");
-            throw new DatabaseStateException("Not connected to database");
+            throw notConnected();
+        }
+        
+        if (autoParameterize) {
+            PreparedStatement statement = prepareParameterized(sql);
+            if (statement != null) {
+                try (statement) {
+                    return statement.execute();
+                }
+            }
         }
         
         logger.debug("Executing query: {}", sql);
         // Use a read lock for querying
         connectionLock.lock();
         try {
+            awaitCursorClosed();
             validateConnection();
             
-            int resultId = Interop.executeQuery(connectionHandle, sql);
-            if (resultId <= 0) {
-                String errorMessage = Interop.getLastError(connectionHandle);
-                logger.error("Query execution failed: {}", errorMessage);
-                throw new DatabaseQueryException("Query execution failed: " + errorMessage);
-            }
-            
-            QueryResult result = new QueryResult(resultId);
+            QueryResult result = runQuery(sql);
             logger.debug("Query executed successfully, retrieved {} rows", result.getRowCount());
+            // Queries can write too, e.g. INSERT ... RETURNING or a data-modifying WITH
+            invalidateCachedResults(sql);
             return result;
         } catch (DatabaseException e) {
             // Re-throw database exceptions
@@ -154,23 +256,34 @@ public class DatabaseConnector implements AutoCloseable {
     public int execute(String sql) throws DatabaseException {
         if (!isConnected.get()) {
             logger.error("Attempted to execute statement while not connected");
-            throw new DatabaseStateException("Not connected to database");
+            throw notConnected();
+        }
+        
+        if (autoParameterize) {
+            PreparedStatement statement = prepareParameterized(sql);
+            if (statement != null) {
+                try (statement) {
+                    return statement.executeUpdate();
+                }
+            }
         }
         
         logger.debug("Executing statement: {}", sql);
         // Use a write lock for modification operations
         connectionLock.lock();
         try {
+            awaitCursorClosed();
             validateConnection();
             
             int affectedRows = Interop.executeNonQuery(connectionHandle, sql);
             if (affectedRows < 0) {
-                String errorMessage = Interop.getLastError(connectionHandle);
+                String errorMessage = lastError();
                 logger.error("Statement execution failed: {}", errorMessage);
                 throw new DatabaseUpdateException("Statement execution failed: " + errorMessage);
             }
             
             logger.debug("Statement executed successfully, affected {} rows", affectedRows);
+            invalidateCachedResults(sql);
             return affectedRows;
         } catch (DatabaseException e) {
             // Re-throw database exceptions
@@ -192,12 +305,13 @@ public class DatabaseConnector implements AutoCloseable {
     public int executeBatch(List<String> statements) throws DatabaseException {
         if (!isConnected.get()) {
             logger.error("Attempted to execute batch while not connected");
-            throw new DatabaseStateException("Not connected to database");
+            throw notConnected();
         }
         
         logger.debug("Executing batch with {} statements", statements.size());
         connectionLock.lock();
         try {
+            awaitCursorClosed();
             validateConnection();
             
             // Start a transaction
@@ -210,7 +324,7 @@ public class DatabaseConnector implements AutoCloseable {
                     logger.trace("Executing batch statement: {}", sql);
                     int affected = Interop.executeNonQuery(connectionHandle, sql);
                     if (affected < 0) {
-                        String errorMessage = Interop.getLastError(connectionHandle);
+                        String errorMessage = lastError();
                         logger.error("Batch statement failed: {}", errorMessage);
                         throw new DatabaseUpdateException("Batch statement failed: " + errorMessage);
                     }
@@ -221,6 +335,7 @@ public class DatabaseConnector implements AutoCloseable {
                 logger.debug("Committing transaction");
                 Interop.executeNonQuery(connectionHandle, "COMMIT");
                 logger.info("Batch execution completed, affected {} rows total", totalAffected);
+                statements.forEach(this::invalidateCachedResults);
                 return totalAffected;
             } catch (Exception e) {
                 // Rollback on any error
@@ -237,146 +352,1563 @@ public class DatabaseConnector implements AutoCloseable {
                 }
                 throw new DatabaseTransactionException("Batch execution failed", e);
             }
-        } finally {
-            connectionLock.unlock();
-        }
-    }
-    
-    /**
-     * Validates the current connection is still valid
-     * @throws DatabaseConnectionException if connection is invalid
-     */
-    private void validateConnection() throws DatabaseConnectionException {
-        if (!isConnected.get()) {
-            throw new DatabaseStateException("Not connected to database");
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+    
+    /**
+     * Prepares a SQL statement for repeated execution. An idle statement for the
+     * same SQL is reused from the statement cache instead of being prepared again;
+     * closing the returned statement puts it back in the cache. Every call returns
+     * a new PreparedStatement, so one closed earlier cannot touch the reused statement.
+     * @param sql SQL statement with placeholders (?)
+     * @return PreparedStatement object
+     * @throws DatabaseException if preparation fails
+     */
+    public PreparedStatement prepare(String sql) throws DatabaseException {
+        if (!isConnected.get()) {
+            logger.error("Attempted to prepare statement while not connected");
+            throw notConnected();
+        }
+        
+        connectionLock.lock();
+        try {
+            awaitCursorClosed();
+            validateConnection();
+            
+            PreparedStatement.Handle cached = statementCache.remove(sql);
+            if (cached != null) {
+                statementCacheHits.incrementAndGet();
+                logger.trace("Reusing cached statement: {}", sql);
+                return new PreparedStatement(this, cached);
+            }
+            statementCacheMisses.incrementAndGet();
+            
+            logger.debug("Preparing statement: {}", sql);
+            int statementId = Interop.prepareStatement(connectionHandle, sql);
+            if (statementId <= 0) {
+                String errorMessage = lastError();
+                logger.error("Statement preparation failed: {}", errorMessage);
+                throw new DatabaseQueryException("Failed to prepare statement: " + errorMessage);
+            }
+            
+            logger.debug("Statement prepared successfully");
+            return new PreparedStatement(this, new PreparedStatement.Handle(this, sql, connectionHandle, statementId));
+        } catch (DatabaseException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error preparing statement: {}", e.getMessage());
+            throw new DatabaseQueryException("Error preparing statement", e);
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+    
+    /**
+     * Executes a prepared statement on this connection
+     */
+    QueryResult executePrepared(PreparedStatement statement) throws DatabaseException {
+        connectionLock.lock();
+        try {
+            awaitCursorClosed();
+            if (!isConnected.get() || statement.getConnectionHandle() != connectionHandle) {
+                throw new DatabaseStateException("Prepared statement belongs to a closed connection");
+            }
+            
+            int resultId = Interop.executePrepared(connectionHandle, statement.getStatementHandle());
+            if (resultId <= 0) {
+                String errorMessage = lastError();
+                logger.error("Prepared statement execution failed: {}", errorMessage);
+                throw withSqlState(new DatabaseQueryException("Prepared statement execution failed: " + errorMessage));
+            }
+            invalidateCachedResults(statement.getSql());
+            return new QueryResult(resultId, handleRegistry);
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+    
+    /**
+     * Executes a prepared non-query statement on this connection
+     * @return Number of rows affected
+     */
+    int executePreparedUpdate(PreparedStatement statement) throws DatabaseException {
+        connectionLock.lock();
+        try {
+            awaitCursorClosed();
+            if (!isConnected.get() || statement.getConnectionHandle() != connectionHandle) {
+                throw new DatabaseStateException("Prepared statement belongs to a closed connection");
+            }
+            
+            int resultId = Interop.executePrepared(connectionHandle, statement.getStatementHandle());
+            if (resultId <= 0) {
+                String errorMessage = lastError();
+                logger.error("Prepared statement execution failed: {}", errorMessage);
+                throw withSqlState(new DatabaseUpdateException("Prepared statement execution failed: " + errorMessage));
+            }
+            try {
+                int affectedRows = Interop.getAffectedRows(resultId);
+                invalidateCachedResults(statement.getSql());
+                return affectedRows;
+            } finally {
+                Interop.freeResult(resultId);
+            }
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+    
+    /**
+     * Prepares the literal-free shape of a statement, through the statement cache,
+     * and binds the literals pulled out of it
+     * @return The bound statement, or null if the statement should run inline
+     */
+    private PreparedStatement prepareParameterized(String sql) throws DatabaseException {
+        SqlLexer.Parameterized parameterized;
+        try {
+            parameterized = SqlLexer.parameterize(sql, SqlLexer.tokenize(sql));
+        } catch (IllegalArgumentException e) {
+            // Let the server report the malformed statement
+            return null;
+        }
+        if (parameterized == null || unparameterizableShapes.contains(parameterized.sql)) {
+            return null;
+        }
+        
+        PreparedStatement statement;
+        connectionLock.lock();
+        try {
+            awaitCursorClosed();
+            // Inside a transaction block a Parse that fails aborts the caller's
+            // transaction, so only shapes already prepared on this connection are used
+            if (isConnected.get() && Interop.getTransactionStatus(connectionHandle) != TRANSACTION_IDLE
+                    && !statementCache.containsKey(parameterized.sql)) {
+                return null;
+            }
+            statement = prepare(parameterized.sql);
+        } catch (DatabaseQueryException e) {
+            // Usually a parameter whose type the server cannot infer; also an invalid
+            // statement, which then reports its own error when run inline
+            logger.debug("Running statement inline, its parameterized form did not prepare: {}", e.getMessage());
+            if (unparameterizableShapes.size() < MAX_UNPARAMETERIZABLE_SHAPES) {
+                unparameterizableShapes.add(parameterized.sql);
+            }
+            return null;
+        } finally {
+            connectionLock.unlock();
+        }
+        
+        try {
+            for (int i = 0; i < parameterized.parameters.size(); i++) {
+                statement.bindString(i + 1, parameterized.parameters.get(i));
+            }
+            return statement;
+        } catch (DatabaseException | RuntimeException e) {
+            statement.release();
+            throw e;
+        }
+    }
+    
+    /**
+     * Enables automatic parameterization. query() and execute() then replace the
+     * string and numeric literals of DML statements with bind parameters and run
+     * the resulting shape as a cached prepared statement, so statements differing
+     * only in literals are parsed and planned once. Statements that cannot be
+     * parameterized, or whose shape the server will not prepare, run inline. Inside
+     * a transaction block only shapes already in the statement cache are used, since
+     * a failed prepare there would abort the transaction.
+     * @param autoParameterize Whether to parameterize inlined literals
+     */
+    public void setAutoParameterize(boolean autoParameterize) {
+        this.autoParameterize = autoParameterize;
+    }
+    
+    /**
+     * Executes a prepared statement once per parameter set inside a transaction.
+     * Parameter sets are handed to the native layer in chunks, each sent as one
+     * pipelined exchange, so the cost is bounded by bandwidth rather than round trips.
+     * @return Rows affected by each parameter set
+     */
+    int[] executePreparedBatch(PreparedStatement statement, List<String[]> parameterSets) throws DatabaseException {
+        connectionLock.lock();
+        try {
+            awaitCursorClosed();
+            if (!isConnected.get() || statement.getConnectionHandle() != connectionHandle) {
+                throw new DatabaseStateException("Prepared statement belongs to a closed connection");
+            }
+            validateConnection();
+            
+            logger.debug("Starting transaction");
+            runStatement("BEGIN");
+            try {
+                int[] affected = new int[parameterSets.size()];
+                for (int start = 0; start < parameterSets.size(); start += BATCH_CHUNK_SIZE) {
+                    int end = Math.min(start + BATCH_CHUNK_SIZE, parameterSets.size());
+                    String[][] chunk = parameterSets.subList(start, end).toArray(new String[0][]);
+                    int[] chunkAffected = Interop.executePreparedBatch(connectionHandle,
+                                                                       statement.getStatementHandle(), chunk);
+                    if (chunkAffected == null || chunkAffected.length != chunk.length) {
+                        String errorMessage = lastError();
+                        logger.error("Batch execution failed: {}", errorMessage);
+                        if (health.isSuspect()) {
+                            throw new DatabaseConnectionException("Batch execution failed: " + errorMessage);
+                        }
+                        throw new DatabaseUpdateException("Batch execution failed: " + errorMessage);
+                    }
+                    System.arraycopy(chunkAffected, 0, affected, start, chunkAffected.length);
+                }
+                
+                logger.debug("Committing transaction");
+                runStatement("COMMIT");
+                logger.info("Prepared batch of {} parameter sets completed", parameterSets.size());
+                invalidateCachedResults(statement.getSql());
+                return affected;
+            } catch (Exception e) {
+                logger.warn("Rolling back transaction due to error: {}", e.getMessage());
+                try {
+                    runStatement("ROLLBACK");
+                } catch (Exception rollbackEx) {
+                    logger.error("Failed to rollback transaction: {}", rollbackEx.getMessage());
+                }
+                // Connection failures pass through unwrapped so pools discard the connection
+                if (e instanceof DatabaseConnectionException) {
+                    throw (DatabaseConnectionException) e;
+                }
+                if (health.isSuspect()) {
+                    throw new DatabaseConnectionException("Batch execution failed, connection lost", e);
+                }
+                throw new DatabaseTransactionException("Batch execution failed", e);
+            }
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+    
+    /**
+     * Parks the native statement of a closed PreparedStatement in the cache,
+     * evicting the least recently used one if the cache is full
+     * @return false if the statement was not cached and must be freed by the caller
+     */
+    boolean returnToCache(PreparedStatement.Handle statement) {
+        connectionLock.lock();
+        try {
+            if (statementCacheSize <= 0 || !isConnected.get()
+                    || statement.connectionHandle != connectionHandle
+                    || statementCache.containsKey(statement.sql)) {
+                return false;
+            }
+            
+            statementCache.put(statement.sql, statement);
+            evictStatements(statementCacheSize);
+            return true;
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+    
+    /**
+     * Frees least recently used statements until at most maxSize remain.
+     * Caller must hold connectionLock.
+     */
+    private void evictStatements(int maxSize) {
+        Iterator<PreparedStatement.Handle> leastRecentFirst = statementCache.values().iterator();
+        while (statementCache.size() > maxSize && leastRecentFirst.hasNext()) {
+            PreparedStatement.Handle evicted = leastRecentFirst.next();
+            leastRecentFirst.remove();
+            statementCacheEvictions.incrementAndGet();
+            logger.trace("Evicting cached statement: {}", evicted.sql);
+            evicted.release();
+        }
+    }
+    
+    /**
+     * @param statementCacheSize Number of idle prepared statements kept per connection, 0 disables caching
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        connectionLock.lock();
+        try {
+            this.statementCacheSize = Math.max(0, statementCacheSize);
+            evictStatements(this.statementCacheSize);
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+    
+    /**
+     * @return Number of prepare() calls served from the statement cache
+     */
+    public long getStatementCacheHits() {
+        return statementCacheHits.get();
+    }
+    
+    /**
+     * @return Number of prepare() calls that had to prepare a new statement
+     */
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+    
+    /**
+     * @return Number of cached statements freed to make room for others
+     */
+    public long getStatementCacheEvictions() {
+        return statementCacheEvictions.get();
+    }
+    
+    /**
+     * @return Number of idle statements currently cached
+     */
+    public int getCachedStatementCount() {
+        connectionLock.lock();
+        try {
+            return statementCache.size();
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+    
+    /**
+     * Runs a read-only query through the result cache. Queries that normalize to the
+     * same text (ignoring layout, comments and keyword case) share one immutable
+     * snapshot until a write on this connector touches a table the query reads, the
+     * entry expires, or it is evicted. Writes made by other connections are only
+     * seen once the entry expires, so set a TTL if they matter.
+     * With the cache disabled this is query(sql).snapshot().
+     * @param sql SQL query to execute
+     * @return Snapshot of the result, possibly shared with other callers
+     * @throws DatabaseException if the query fails
+     */
+    public ResultSnapshot queryCached(String sql) throws DatabaseException {
+        if (!resultCache.isEnabled()) {
+            return query(sql).snapshot();
+        }
+        
+        List<SqlLexer.Token> tokens = SqlLexer.tokenize(sql);
+        String key = SqlLexer.normalize(tokens);
+        ResultSnapshot cached = resultCache.get(key);
+        if (cached != null) {
+            logger.debug("Serving query from result cache: {}", key);
+            return cached;
+        }
+        
+        long generation = resultCache.getGeneration();
+        ResultSnapshot snapshot = query(sql).snapshot();
+        resultCache.put(key, snapshot, SqlLexer.referencedTables(tokens), generation);
+        return snapshot;
+    }
+    
+    /**
+     * Drops cached results that read a table the statement may have written. Plain
+     * reads drop nothing; a statement whose tables cannot be determined drops the
+     * whole cache.
+     */
+    private void invalidateCachedResults(String sql) {
+        if (!resultCache.isEnabled()) {
+            return;
+        }
+        
+        List<SqlLexer.Token> tokens;
+        try {
+            tokens = SqlLexer.tokenize(sql);
+        } catch (IllegalArgumentException e) {
+            resultCache.clear();
+            return;
+        }
+        if (!SqlLexer.isReadOnly(tokens)) {
+            resultCache.invalidate(SqlLexer.referencedTables(tokens));
+        }
+    }
+    
+    /**
+     * @param maxCells Total cells (rows times columns) kept across cached results,
+     *                 0 disables the result cache
+     */
+    public void setResultCacheCapacity(long maxCells) {
+        resultCache.setMaxCells(maxCells);
+    }
+    
+    /**
+     * @param ttl How long a cached result is served before the query runs again;
+     *            zero keeps results until a write invalidates them or they are evicted
+     */
+    public void setResultCacheTtl(Duration ttl) {
+        resultCache.setTtlNanos(ttl.toNanos());
+    }
+    
+    /**
+     * Drops every cached result, for example after writes made outside this connector
+     */
+    public void clearResultCache() {
+        resultCache.clear();
+    }
+    
+    /**
+     * @return Number of queryCached() calls served from the cache
+     */
+    public long getResultCacheHits() {
+        return resultCache.getHits();
+    }
+    
+    /**
+     * @return Number of queryCached() calls that ran the query
+     */
+    public long getResultCacheMisses() {
+        return resultCache.getMisses();
+    }
+    
+    /**
+     * @return Number of cached results dropped to stay within capacity
+     */
+    public long getResultCacheEvictions() {
+        return resultCache.getEvictions();
+    }
+    
+    /**
+     * @return Number of cached results dropped because a write touched their tables
+     */
+    public long getResultCacheInvalidations() {
+        return resultCache.getInvalidations();
+    }
+    
+    /**
+     * @return Number of results currently cached
+     */
+    public int getCachedResultCount() {
+        return resultCache.size();
+    }
+    
+    /**
+     * Data format of a COPY transfer
+     */
+    public enum CopyFormat {
+        CSV("csv"),
+        BINARY("binary");
+        
+        private final String option;
+        
+        CopyFormat(String option) {
+            this.option = option;
+        }
+    }
+    
+    /**
+     * Bulk loads rows with COPY FROM STDIN, streaming the source in fixed-size chunks
+     * so memory use is constant regardless of input size. The load is atomic: if
+     * reading the source fails, the COPY is aborted and nothing is inserted.
+     * @param table Table to load, optionally schema-qualified
+     * @param columns Columns in the order they appear in the data, or empty for all columns
+     * @param source Blocking channel supplying the COPY data
+     * @param format Format of the data
+     * @return Number of rows loaded
+     * @throws DatabaseUpdateException if the COPY fails
+     */
+    public long copyIn(String table, List<String> columns, ReadableByteChannel source, CopyFormat format)
+            throws DatabaseException {
+        if (!isConnected.get()) {
+            logger.error("Attempted to copy in while not connected");
+            throw notConnected();
+        }
+        
+        StringBuilder copySql = new StringBuilder("COPY ").append(quoteQualifiedIdentifier(table));
+        if (!columns.isEmpty()) {
+            copySql.append(" (");
+            for (int i = 0; i < columns.size(); i++) {
+                copySql.append(i > 0 ? ", " : "").append(quoteIdentifier(columns.get(i)));
+            }
+            copySql.append(')');
+        }
+        copySql.append(" FROM STDIN WITH (FORMAT ").append(format.option).append(')');
+        
+        logger.debug("Starting bulk load: {}", copySql);
+        connectionLock.lock();
+        try {
+            awaitCursorClosed();
+            validateConnection();
+            
+            if (Interop.copyInStart(connectionHandle, copySql.toString()) <= 0) {
+                String errorMessage = lastError();
+                logger.error("COPY FROM failed to start: {}", errorMessage);
+                throw new DatabaseUpdateException("Failed to start bulk load: " + errorMessage);
+            }
+            
+            ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_CHUNK_BYTES);
+            long bytes = 0;
+            try {
+                while (source.read(buffer) >= 0) {
+                    if (!buffer.hasRemaining()) {
+                        bytes += sendCopyChunk(buffer);
+                    }
+                }
+                bytes += sendCopyChunk(buffer);
+            } catch (IOException | DatabaseException e) {
+                Interop.copyInEnd(connectionHandle, "Bulk load aborted: " + e.getMessage());
+                logger.error("Bulk load into {} aborted after {} bytes: {}", table, bytes, e.getMessage());
+                throw new DatabaseUpdateException("Bulk load aborted", e);
+            }
+            
+            long rows = Interop.copyInEnd(connectionHandle, null);
+            if (rows < 0) {
+                String errorMessage = lastError();
+                logger.error("COPY FROM failed: {}", errorMessage);
+                throw new DatabaseUpdateException("Bulk load failed: " + errorMessage);
+            }
+            
+            logger.info("Bulk loaded {} rows ({} bytes) into {}", rows, bytes, table);
+            invalidateCachedResults(copySql.toString());
+            return rows;
+        } catch (DatabaseException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Unexpected error during bulk load: {}", e.getMessage(), e);
+            throw new DatabaseUpdateException("Error during bulk load", e);
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+    
+    /**
+     * Bulk loads CSV data
+     * @see #copyIn(String, List, ReadableByteChannel, CopyFormat)
+     */
+    public long copyIn(String table, List<String> columns, ReadableByteChannel source) throws DatabaseException {
+        return copyIn(table, columns, source, CopyFormat.CSV);
+    }
+    
+    /**
+     * Bulk exports the result of a query with COPY TO STDOUT, writing it to the sink
+     * in fixed-size chunks as it arrives from the server
+     * @param query SELECT query whose result is exported
+     * @param sink Blocking channel receiving the COPY data
+     * @param format Format to export in
+     * @return Number of rows exported
+     * @throws DatabaseQueryException if the COPY fails
+     */
+    public long copyOut(String query, WritableByteChannel sink, CopyFormat format) throws DatabaseException {
+        if (!isConnected.get()) {
+            logger.error("Attempted to copy out while not connected");
+            throw notConnected();
+        }
+        
+        String copySql = "COPY (" + stripTrailingSemicolons(query) + ") TO STDOUT WITH (FORMAT " + format.option + ")";
+        logger.debug("Starting bulk export: {}", copySql);
+        connectionLock.lock();
+        try {
+            awaitCursorClosed();
+            validateConnection();
+            
+            if (Interop.copyOutStart(connectionHandle, copySql) <= 0) {
+                String errorMessage = lastError();
+                logger.error("COPY TO failed to start: {}", errorMessage);
+                throw new DatabaseQueryException("Failed to start bulk export: " + errorMessage);
+            }
+            
+            ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_CHUNK_BYTES);
+            long bytes = 0;
+            int chunk;
+            try {
+                while ((chunk = Interop.copyOutData(connectionHandle, buffer)) > 0) {
+                    buffer.position(0).limit(chunk);
+                    while (buffer.hasRemaining()) {
+                        sink.write(buffer);
+                    }
+                    buffer.clear();
+                    bytes += chunk;
+                }
+            } catch (IOException e) {
+                Interop.cancelCopyOut(connectionHandle);
+                logger.error("Bulk export aborted after {} bytes: {}", bytes, e.getMessage());
+                throw new DatabaseQueryException("Bulk export aborted", e);
+            }
+            
+            long rows = chunk < 0 ? -1 : Interop.copyOutEnd(connectionHandle);
+            if (rows < 0) {
+                String errorMessage = lastError();
+                logger.error("COPY TO failed: {}", errorMessage);
+                throw new DatabaseQueryException("Bulk export failed: " + errorMessage);
+            }
+            
+            logger.info("Bulk exported {} rows ({} bytes)", rows, bytes);
+            return rows;
+        } catch (DatabaseException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Unexpected error during bulk export: {}", e.getMessage(), e);
+            throw new DatabaseQueryException("Error during bulk export", e);
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+    
+    /**
+     * Bulk exports CSV data
+     * @see #copyOut(String, WritableByteChannel, CopyFormat)
+     */
+    public long copyOut(String query, WritableByteChannel sink) throws DatabaseException {
+        return copyOut(query, sink, CopyFormat.CSV);
+    }
+    
+    /**
+     * Sends the filled part of the buffer as COPY data and clears it.
+     * Caller must hold connectionLock.
+     * @return Number of bytes sent
+     */
+    private int sendCopyChunk(ByteBuffer buffer) throws DatabaseException {
+        int length = buffer.position();
+        if (length == 0) {
+            return 0;
+        }
+        if (Interop.copyInData(connectionHandle, buffer, length) < 0) {
+            throw new DatabaseUpdateException("Failed to send COPY data: " + lastError());
+        }
+        buffer.clear();
+        return length;
+    }
+    
+    private static String quoteIdentifier(String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+    
+    private static String quoteQualifiedIdentifier(String name) {
+        String[] parts = name.split("\\.");
+        StringBuilder quoted = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            quoted.append(i > 0 ? "." : "").append(quoteIdentifier(parts[i]));
+        }
+        return quoted.toString();
+    }
+    
+    /**
+     * @return Number of query results opened on this connection and not yet freed
+     */
+    public int getOpenResultCount() {
+        return handleRegistry.getOpenResults();
+    }
+    
+    /**
+     * @return Number of prepared statements, including cached ones, not yet freed
+     */
+    public int getOpenStatementCount() {
+        return handleRegistry.getOpenStatements();
+    }
+    
+    /**
+     * @return Number of results, statements and cursors that were garbage collected
+     *         without being closed and had to be freed by the cleaner
+     */
+    public long getLeakedHandleCount() {
+        return handleRegistry.getLeakedHandles();
+    }
+    
+    /**
+     * @return When the connection last passed a health check or was opened, or null if never
+     */
+    public Instant getLastValidated() {
+        return health.getLastValidated();
+    }
+    
+    /**
+     * @return Number of health checks the connection has failed
+     */
+    public long getHealthCheckFailureCount() {
+        return health.getFailedChecks();
+    }
+    
+    /**
+     * @return Number of times an I/O error marked the connection suspect
+     */
+    public long getSuspectCount() {
+        return health.getSuspectMarks();
+    }
+    
+    /**
+     * @return Whether an I/O error has flagged the connection for a check before its next use
+     */
+    public boolean isSuspect() {
+        return health.isSuspect();
+    }
+    
+    /**
+     * @param healthCheckInterval Idle time after which the connection is checked in the
+     *                            background; zero disables background checks
+     */
+    public void setHealthCheckInterval(Duration healthCheckInterval) {
+        health.setIdleInterval(healthCheckInterval);
+    }
+    
+    /**
+     * @param sampleRate Record where one in this many results and statements was
+     *                   created, reported if it leaks; 1 records all, 0 disables
+     */
+    public void setLeakSampleRate(int sampleRate) {
+        handleRegistry.setAllocationSampleRate(sampleRate);
+    }
+    
+    NativeHandleRegistry getHandleRegistry() {
+        return handleRegistry;
+    }
+    
+    /**
+     * Queues a query to run asynchronously. Queued statements are sent together in
+     * Postgres pipeline mode, so many can be in flight on this connection at once;
+     * futures complete in submission order.
+     * @param sql SQL query to execute
+     * @return Future completed with the result, or exceptionally with a DatabaseException
+     */
+    public CompletableFuture<QueryResult> queryAsync(String sql) {
+        if (!isConnected.get()) {
+            logger.error("Attempted to queue query while not connected");
+            return CompletableFuture.failedFuture(notConnected());
+        }
+        
+        logger.debug("Queueing query: {}", sql);
+        return pipeline.submitQuery(sql);
+    }
+    
+    /**
+     * Queues a non-query statement to run asynchronously
+     * @param sql SQL statement to execute
+     * @return Future completed with the number of rows affected, or exceptionally
+     *         with a DatabaseException
+     * @see #queryAsync(String)
+     */
+    public CompletableFuture<Integer> executeAsync(String sql) {
+        if (!isConnected.get()) {
+            logger.error("Attempted to queue statement while not connected");
+            return CompletableFuture.failedFuture(notConnected());
+        }
+        
+        logger.debug("Queueing statement: {}", sql);
+        return pipeline.submitUpdate(sql);
+    }
+    
+    /**
+     * Sends a batch of queued statements in pipeline mode and reads their results in
+     * order, recording each outcome on its operation. Statements come from unrelated
+     * callers, so each is followed by its own sync: Postgres runs everything between
+     * two syncs as one implicit transaction, and a shared sync would let one failure
+     * roll back or skip its neighbours. A failed statement therefore only fails itself.
+     * Syncs are sent without waiting, so the batch still costs one round trip.
+     */
+    void executePipelined(List<QueryPipeline.Operation> operations) {
+        connectionLock.lock();
+        try {
+            awaitCursorClosed();
+            validateConnection();
+            
+            if (Interop.enterPipeline(connectionHandle) <= 0) {
+                throw new DatabaseQueryException("Failed to enter pipeline mode: "
+                                                 + lastError());
+            }
+            try {
+                int sent = 0;
+                while (sent < operations.size()
+                        && Interop.pipelineSend(connectionHandle, operations.get(sent).sql) > 0
+                        && Interop.pipelineSync(connectionHandle) > 0) {
+                    sent++;
+                }
+                if (sent < operations.size()) {
+                    String errorMessage = lastError();
+                    logger.error("Failed to send pipelined statement: {}", errorMessage);
+                    for (QueryPipeline.Operation operation : operations.subList(sent, operations.size())) {
+                        operation.setError(new DatabaseQueryException("Failed to send statement: " + errorMessage));
+                    }
+                }
+                
+                for (QueryPipeline.Operation operation : operations.subList(0, sent)) {
+                    if (operation.isQuery()) {
+                        int resultId = Interop.pipelineNextQueryResult(connectionHandle);
+                        if (resultId <= 0) {
+                            operation.setError(new DatabaseQueryException("Query execution failed: "
+                                                                          + lastError()));
+                        } else {
+                            operation.setResultHandle(resultId);
+                            invalidateCachedResults(operation.sql);
+                        }
+                    } else {
+                        int affectedRows = Interop.pipelineNextUpdateResult(connectionHandle);
+                        if (affectedRows < 0) {
+                            operation.setError(new DatabaseUpdateException("Statement execution failed: "
+                                                                           + lastError()));
+                        } else {
+                            operation.setAffectedRows(affectedRows);
+                            invalidateCachedResults(operation.sql);
+                        }
+                    }
+                }
+            } finally {
+                Interop.exitPipeline(connectionHandle);
+            }
+            logger.debug("Pipelined {} statements in one exchange", operations.size());
+        } catch (DatabaseException e) {
+            logger.error("Pipelined execution failed: {}", e.getMessage());
+            operations.forEach(operation -> operation.setError(e));
+        } catch (Exception e) {
+            logger.error("Unexpected error in pipelined execution: {}", e.getMessage(), e);
+            DatabaseQueryException error = new DatabaseQueryException("Error executing pipelined statements", e);
+            operations.forEach(operation -> operation.setError(error));
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+    
+    /**
+     * Opens a server-side cursor and streams its rows, fetchSize rows per round trip,
+     * so memory stays bounded however large the result is. The cursor runs in its own
+     * transaction and holds the connection until it is closed or exhausted; statements
+     * from other threads wait for it up to the cursor wait timeout, and the opening
+     * thread must close it before issuing other statements. A cursor that becomes
+     * unreachable without being closed is closed by the cleaner.
+     * @param sql SELECT query to stream
+     * @param fetchSize Number of rows fetched from the server at a time
+     * @return Cursor over the rows, to be closed when done
+     * @throws DatabaseQueryException if the cursor cannot be opened
+     * @throws DatabaseStateException if a transaction is already open on the connection,
+     *         which the cursor's own transaction would otherwise commit
+     */
+    public ResultCursor openCursor(String sql, int fetchSize) throws DatabaseException {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("Fetch size must be at least 1");
+        }
+        if (!isConnected.get()) {
+            logger.error("Attempted to open cursor while not connected");
+            throw notConnected();
+        }
+        
+        logger.debug("Opening cursor with fetch size {} for query: {}", fetchSize, sql);
+        connectionLock.lock();
+        try {
+            awaitCursorClosed();
+            validateConnection();
+            if (Interop.getTransactionStatus(connectionHandle) != TRANSACTION_IDLE) {
+                throw new DatabaseStateException("Cannot open a cursor inside an open transaction");
+            }
+            
+            int number = ++cursorCounter;
+            String name = "modular_cursor_" + number;
+            runStatement("BEGIN");
+            try {
+                runStatement("DECLARE " + name + " NO SCROLL CURSOR FOR " + stripTrailingSemicolons(sql));
+            } catch (DatabaseException e) {
+                try {
+                    runStatement("ROLLBACK");
+                } catch (DatabaseException rollbackEx) {
+                    logger.error("Failed to rollback cursor transaction: {}", rollbackEx.getMessage());
+                }
+                throw new DatabaseQueryException("Failed to open cursor: " + e.getMessage(), e);
+            }
+            
+            CursorState cursor = new CursorState(number, name);
+            ResultCursor resultCursor = new ResultCursor(cursor, fetchSize);
+            activeCursor = cursor;
+            return resultCursor;
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+    
+    /**
+     * Opens a cursor with the configured fetch size
+     * @see #openCursor(String, int)
+     */
+    public ResultCursor openCursor(String sql) throws DatabaseException {
+        return openCursor(sql, fetchSize);
+    }
+    
+    /**
+     * Streams the rows of a query through a server-side cursor. The stream should be
+     * closed, for example with try-with-resources, to release the connection; one
+     * dropped without closing holds the connection until it is garbage collected.
+     * @param sql SELECT query to stream
+     * @return Stream of rows, each holding one value per column
+     * @see #openCursor(String, int)
+     */
+    public Stream<String[]> queryStream(String sql) throws DatabaseException {
+        return openCursor(sql).stream();
+    }
+    
+    /**
+     * @param cursorWaitTimeout How long a statement waits for another thread's open
+     *                          cursor before failing with a DatabaseStateException
+     */
+    public void setCursorWaitTimeout(Duration cursorWaitTimeout) {
+        this.cursorWaitTimeout = cursorWaitTimeout;
+    }
+    
+    /**
+     * @param fetchSize Default number of rows fetched per cursor round trip
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("Fetch size must be at least 1");
+        }
+        this.fetchSize = fetchSize;
+    }
+    
+    /**
+     * State of the reconnect circuit breaker
+     */
+    public enum CircuitState {
+        /** Connected; calls go through */
+        CLOSED,
+        /** Connection lost; calls fail fast while reconnects back off */
+        OPEN,
+        /** A trial reconnect is in progress; calls still fail fast */
+        HALF_OPEN
+    }
+    
+    /**
+     * @return Current state of the reconnect circuit breaker
+     */
+    public CircuitState getCircuitState() {
+        return reconnectSupervisor.getState();
+    }
+    
+    /**
+     * Sets the delays between connection attempts. Each retry doubles the delay up
+     * to the maximum, randomized within the upper half to spread out reconnecting clients.
+     * @param initialBackoff Delay before the first retry
+     * @param maxBackoff Longest delay between retries
+     */
+    public void setReconnectBackoff(Duration initialBackoff, Duration maxBackoff) {
+        reconnectSupervisor.setBackoff(initialBackoff.toMillis(), maxBackoff.toMillis());
+    }
+    
+    /**
+     * Waits up to the cursor wait timeout until no cursor holds the connection.
+     * Caller must hold connectionLock.
+     * @throws DatabaseStateException if the calling thread owns the open cursor, or
+     *         the cursor is still open when the timeout expires
+     */
+    private void awaitCursorClosed() throws DatabaseException {
+        long remaining = cursorWaitTimeout.toNanos();
+        while (activeCursor != null) {
+            if (activeCursor.owner == Thread.currentThread()) {
+                throw new DatabaseStateException("A cursor is open on this connection; close it first");
+            }
+            if (remaining <= 0) {
+                throw new DatabaseStateException("Timed out after " + cursorWaitTimeout.toMillis()
+                                                 + " ms waiting for an open cursor to be closed");
+            }
+            try {
+                remaining = cursorClosed.awaitNanos(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DatabaseStateException("Interrupted while waiting for an open cursor", e);
+            }
+        }
+    }
+    
+    /**
+     * Closes the server-side cursor and commits its transaction, releasing the
+     * connection to other statements. Runs once per cursor: from its close(), from
+     * closeActiveCursor(), or on the cleaner thread for a cursor dropped unclosed.
+     * Does nothing if the connection has already dropped the cursor.
+     */
+    private void endCursor(CursorState cursor) {
+        connectionLock.lock();
+        try {
+            if (activeCursor != cursor) {
+                return;
+            }
+            
+            try {
+                runStatement("CLOSE " + cursor.name);
+            } catch (Exception e) {
+                logger.debug("Error closing cursor {}: {}", cursor.name, e.getMessage());
+            }
+            try {
+                runStatement("COMMIT");
+                cursor.committed = true;
+            } catch (Exception e) {
+                logger.warn("Failed to end cursor transaction: {}", e.getMessage());
+            } finally {
+                activeCursor = null;
+                cursorClosed.signalAll();
+            }
+            logger.debug("Cursor {} closed", cursor.name);
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+    
+    // Built here so the cleanup action cannot hold a reference to the ResultCursor
+    private Runnable endCursorAction(CursorState cursor) {
+        return () -> endCursor(cursor);
+    }
+    
+    /**
+     * Closes the cursor holding the connection, if any, so the connection can be
+     * handed to its next user, for example when it is returned to a pool
+     * @return false if a cursor was open and its transaction could not be committed,
+     *         so the connection is not in a clean state
+     */
+    boolean closeActiveCursor() {
+        connectionLock.lock();
+        try {
+            CursorState cursor = activeCursor;
+            if (cursor == null) {
+                return true;
+            }
+            logger.warn("Closing cursor {} that was left open", cursor.name);
+            cursor.registration.release();
+            return cursor.committed;
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+    
+    /**
+     * Runs a query on the current connection. Caller must hold connectionLock.
+     */
+    private QueryResult runQuery(String sql) throws DatabaseException {
+        int resultId = Interop.executeQuery(connectionHandle, sql);
+        if (resultId <= 0) {
+            String errorMessage = lastError();
+            logger.error("Query execution failed: {}", errorMessage);
+            throw withSqlState(new DatabaseQueryException("Query execution failed: " + errorMessage));
+        }
+        return new QueryResult(resultId, handleRegistry);
+    }
+    
+    /**
+     * Runs a statement on the current connection. Caller must hold connectionLock.
+     */
+    private int runStatement(String sql) throws DatabaseException {
+        int affectedRows = Interop.executeNonQuery(connectionHandle, sql);
+        if (affectedRows < 0) {
+            String errorMessage = lastError();
+            throw withSqlState(new DatabaseUpdateException("Statement execution failed: " + errorMessage));
+        }
+        return affectedRows;
+    }
+    
+    private static String stripTrailingSemicolons(String sql) {
+        int end = sql.length();
+        while (end > 0 && (sql.charAt(end - 1) == ';' || Character.isWhitespace(sql.charAt(end - 1)))) {
+            end--;
+        }
+        return sql.substring(0, end);
+    }
+    
+    /**
+     * Validates the current connection before a statement. Liveness is checked in the
+     * background, so this only makes a native round trip after an I/O error has
+     * marked the connection suspect. Caller must hold connectionLock.
+     * @throws DatabaseConnectionException if connection is invalid
+     */
+    private void validateConnection() throws DatabaseException {
+        if (!isConnected.get()) {
+            throw notConnected();
+        }
+        
+        health.markUsed();
+        if (health.isSuspect() && !probeConnection()) {
+            if (autoReconnect) {
+                throw new DatabaseConnectionException("Connection to database lost, reconnecting in the background");
+            }
+            throw new DatabaseConnectionException("Connection to database lost");
+        }
+    }
+    
+    /**
+     * Checks the connection with a native round trip. A dead connection is dropped and,
+     * with autoReconnect, handed to the reconnect supervisor. Caller must hold connectionLock.
+     * @return true if the connection is alive
+     */
+    private boolean probeConnection() {
+        boolean valid;
+        try {
+            valid = Interop.isConnectionValid(connectionHandle);
+        } catch (Exception e) {
+            logger.debug("Error checking connection validity: {}", e.getMessage());
+            valid = false;
+        }
+        
+        if (valid) {
+            health.recordValid();
+            return true;
+        }
+        
+        health.recordFailure();
+        logger.warn("Connection is invalid, dropping it");
+        try {
+            Interop.closeConnection(connectionHandle);
+        } catch (Exception e) {
+            logger.debug("Error closing invalid connection: {}", e.getMessage());
+        }
+        
+        // Cached statements and any open cursor belong to the old connection
+        statementCache.values().forEach(PreparedStatement.Handle::release);
+        statementCache.clear();
+        activeCursor = null;
+        cursorClosed.signalAll();
+        connectionHandle = 0;
+        isConnected.set(false);
+        
+        if (autoReconnect) {
+            // Reconnect in the background instead of stalling every caller on the lock
+            reconnectSupervisor.connectionLost();
+        }
+        return false;
+    }
+    
+    /**
+     * Background health check run by the health monitor. Skipped while another
+     * thread holds the connection or a cursor is open, since that use will
+     * surface any I/O error itself.
+     */
+    void checkHealth() {
+        if (!connectionLock.tryLock()) {
+            return;
+        }
+        try {
+            if (isConnected.get() && activeCursor == null) {
+                probeConnection();
+            }
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+    
+    /**
+     * Reads the last error message on the connection. Errors in the connection
+     * exception class (SQLSTATE 08) or without a SQLSTATE come from the client or
+     * network rather than the SQL, so they mark the connection suspect.
+     * Caller must hold connectionLock.
+     */
+    private String lastError() {
+        lastSqlState = null;
+        try {
+            lastSqlState = Interop.getLastSqlState(connectionHandle);
+            if (lastSqlState == null || lastSqlState.startsWith("08")) {
+                health.markSuspect();
+            }
+        } catch (Exception e) {
+            health.markSuspect();
+        }
+        return Interop.getLastError(connectionHandle);
+    }
+    
+    /**
+     * Attaches the SQLSTATE read by the last lastError() call to an exception.
+     * Caller must hold connectionLock.
+     */
+    private <E extends DatabaseException> E withSqlState(E error) {
+        ((DatabaseException) error).sqlState = lastSqlState;
+        return error;
+    }
+    
+    /**
+     * @return Exception for a call made without a connection: a connection error while
+     *         the circuit is open, so it fails fast and pools discard it, otherwise a state error
+     */
+    private DatabaseException notConnected() {
+        if (reconnectSupervisor.isReconnecting()) {
+            return new DatabaseConnectionException("Database unavailable, reconnecting in the background (circuit "
+                                                   + reconnectSupervisor.getState() + ")");
+        }
+        return new DatabaseStateException("Not connected to database");
+    }
+
+    /**
+     * @return Whether a native connection is currently installed
+     */
+    boolean isConnected() {
+        return isConnected.get();
+    }
+
+    /**
+     * Checks the connection without attempting to reconnect. Trusts the background
+     * health checks unless the connection has been marked suspect.
+     * @return true if connected and the native connection is still usable
+     */
+    boolean isValid() {
+        if (!isConnected.get()) {
+            return false;
+        }
+        if (!health.isSuspect()) {
+            return true;
+        }
+
+        connectionLock.lock();
+        try {
+            return isConnected.get() && probeConnection();
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    /**
+     * Thread-safe connection close operation. The connector can be connected again
+     * with connect().
+     */
+    @Override
+    public void close() {
+        // Background workers are stopped even if the connection is already down, for
+        // example while the circuit is open, so no thread leaks and queued work fails.
+        // Taking the lock orders stopping reconnects against installConnection, which
+        // reopens the pipeline, so the pipeline is closed once reconnects have stopped.
+        connectionLock.lock();
+        try {
+            reconnectSupervisor.close();
+            health.close();
+        } finally {
+            connectionLock.unlock();
+        }
+        pipeline.close();
+        if (!isConnected.get()) {
+            return;
+        }
+        
+        logger.debug("Closing database connection");
+        connectionLock.lock();
+        try {
+            if (isConnected.get()) {
+                evictStatements(0);
+                try {
+                    Interop.closeConnection(connectionHandle);
+                    logger.info("Database connection closed successfully");
+                } catch (Exception e) {
+                    logger.error("Error closing database connection: {}", e.getMessage(), e);
+                } finally {
+                    connectionHandle = 0;
+                    isConnected.set(false);
+                    // Any open cursor died with the connection
+                    activeCursor = null;
+                    cursorClosed.signalAll();
+                }
+            }
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+    
+    /**
+     * Thread-safe result wrapper
+     */
+    public static class QueryResult implements AutoCloseable {
+        private static final Logger logger = LoggerFactory.getLogger(QueryResult.class);
+        // Rows pulled across the native boundary per block
+        private static final int BLOCK_ROWS = 1024;
+        private static final int INITIAL_BLOCK_BYTES = 256 * 1024;
+        private static final int MAX_BLOCK_BYTES = 64 * 1024 * 1024;
+        // Binary timestamps count microseconds from 2000-01-01 UTC
+        private static final Instant POSTGRES_EPOCH = Instant.parse("2000-01-01T00:00:00Z");
+        private final int resultHandle;
+        private final NativeHandleRegistry.Registration registration;
+        private final ReentrantLock resultLock = new ReentrantLock();
+        private volatile boolean closed = false;
+        // Result sets are immutable, so counts and column names are read from native code once
+        private volatile ResultMetadata metadata;
+        // Reused for block fetches, guarded by resultLock
+        private ByteBuffer blockBuffer;
+        private byte[] decodeBuffer;
+        
+        QueryResult(int resultHandle, NativeHandleRegistry handles) {
+            this.resultHandle = resultHandle;
+            this.registration = handles.register(this, NativeHandleRegistry.Kind.RESULT, resultHandle,
+                                                 freeResultAction(resultHandle));
+            logger.trace("Created new query result with handle: {}", resultHandle);
+        }
+        
+        // Static so the cleanup action cannot hold a reference to the result
+        private static Runnable freeResultAction(int resultHandle) {
+            return () -> Interop.freeResult(resultHandle);
+        }
+        
+        /**
+         * Thread-safe row count accessor
+         */
+        public int getRowCount() throws DatabaseException {
+            return metadata().rowCount;
+        }
+        
+        /**
+         * Thread-safe column count accessor
+         */
+        public int getColumnCount() throws DatabaseException {
+            return metadata().columnNames.length;
+        }
+        
+        /**
+         * Thread-safe column name accessor
+         * @return Copy of the column names in result order
+         */
+        public String[] getColumnNames() throws DatabaseException {
+            return metadata().columnNames.clone();
+        }
+        
+        /**
+         * Thread-safe value accessor
+         */
+        public String getValue(int row, int column) throws DatabaseException {
+            checkCell(row, column);
+            resultLock.lock();
+            try {
+                checkClosed();
+                String value = Interop.getValue(resultHandle, row, column);
+                logger.trace("Retrieved value at row={}, column={}: {}", row, column, value);
+                return value;
+            } catch (DatabaseException e) {
+                throw e;
+            } catch (Exception e) {
+                logger.error("Error getting value at row={}, column={}: {}", row, column, e.getMessage());
+                throw new DatabaseQueryException("Failed to get value", e);
+            } finally {
+                resultLock.unlock();
+            }
+        }
+        
+        /**
+         * Checks whether a value is SQL NULL
+         */
+        public boolean isNull(int row, int column) throws DatabaseException {
+            checkCell(row, column);
+            resultLock.lock();
+            try {
+                checkClosed();
+                return Interop.isNull(resultHandle, row, column);
+            } catch (DatabaseException e) {
+                throw e;
+            } catch (Exception e) {
+                throw typedAccessError("null flag", row, column, e);
+            } finally {
+                resultLock.unlock();
+            }
+        }
+        
+        /**
+         * Reads an int2/int4 value from its binary form, without a String round trip
+         * @return The value, or 0 for SQL NULL
+         */
+        public int getInt(int row, int column) throws DatabaseException {
+            checkCell(row, column);
+            resultLock.lock();
+            try {
+                checkClosed();
+                return Interop.getIntValue(resultHandle, row, column);
+            } catch (DatabaseException e) {
+                throw e;
+            } catch (Exception e) {
+                throw typedAccessError("int", row, column, e);
+            } finally {
+                resultLock.unlock();
+            }
+        }
+        
+        /**
+         * Reads an int2/int4/int8 value from its binary form
+         * @return The value, or 0 for SQL NULL
+         */
+        public long getLong(int row, int column) throws DatabaseException {
+            checkCell(row, column);
+            resultLock.lock();
+            try {
+                checkClosed();
+                return Interop.getLongValue(resultHandle, row, column);
+            } catch (DatabaseException e) {
+                throw e;
+            } catch (Exception e) {
+                throw typedAccessError("long", row, column, e);
+            } finally {
+                resultLock.unlock();
+            }
+        }
+        
+        /**
+         * Reads a float4/float8 value from its binary form
+         * @return The value, or 0 for SQL NULL
+         */
+        public double getDouble(int row, int column) throws DatabaseException {
+            checkCell(row, column);
+            resultLock.lock();
+            try {
+                checkClosed();
+                return Interop.getDoubleValue(resultHandle, row, column);
+            } catch (DatabaseException e) {
+                throw e;
+            } catch (Exception e) {
+                throw typedAccessError("double", row, column, e);
+            } finally {
+                resultLock.unlock();
+            }
+        }
+        
+        /**
+         * Reads a bool value from its binary form
+         * @return The value, or false for SQL NULL
+         */
+        public boolean getBoolean(int row, int column) throws DatabaseException {
+            checkCell(row, column);
+            resultLock.lock();
+            try {
+                checkClosed();
+                return Interop.getBooleanValue(resultHandle, row, column);
+            } catch (DatabaseException e) {
+                throw e;
+            } catch (Exception e) {
+                throw typedAccessError("boolean", row, column, e);
+            } finally {
+                resultLock.unlock();
+            }
         }
         
-        try {
-            if (!Interop.isConnectionValid(connectionHandle)) {
-                logger.warn("Connection is invalid, attempting reconnection");
-                if (autoReconnect) {
-                    // Close existing invalid connection
-                    try {
-                        Interop.closeConnection(connectionHandle);
-                    } catch (Exception e) {
-                        logger.debug("Error closing invalid connection: {}", e.getMessage());
-                    }
-                    
-                    // Try to reconnect
-                    connectionHandle = 0;
-                    isConnected.set(false);
-                    connect();
-                    logger.info("Successfully reconnected to database");
-                } else {
-                    throw new DatabaseConnectionException("Connection to database lost");
+        /**
+         * Reads a timestamp/timestamptz value from its binary form
+         * @return The instant, or null for SQL NULL
+         */
+        public Instant getTimestamp(int row, int column) throws DatabaseException {
+            checkCell(row, column);
+            resultLock.lock();
+            try {
+                checkClosed();
+                if (Interop.isNull(resultHandle, row, column)) {
+                    return null;
                 }
+                long micros = Interop.getTimestampValue(resultHandle, row, column);
+                return POSTGRES_EPOCH.plus(micros, ChronoUnit.MICROS);
+            } catch (DatabaseException e) {
+                throw e;
+            } catch (Exception e) {
+                throw typedAccessError("timestamp", row, column, e);
+            } finally {
+                resultLock.unlock();
             }
-        } catch (DatabaseConnectionException e) {
-            throw e;
-        } catch (Exception e) {
-            logger.error("Error validating connection: {}", e.getMessage());
-            throw new DatabaseConnectionException("Error validating database connection", e);
-        }
-    }
-    
-    /**
-     * Thread-safe connection close operation
-     */
-    @Override
-    public void close() {
-        if (!isConnected.get()) {
-            return;
         }
         
-        logger.debug("Closing database connection");
-        connectionLock.lock();
-        try {
-            if (isConnected.get()) {
-                try {
-                    Interop.closeConnection(connectionHandle);
-                    logger.info("Database connection closed successfully");
-                } catch (Exception e) {
-                    logger.error("Error closing database connection: {}", e.getMessage(), e);
-                } finally {
-                    connectionHandle = 0;
-                    isConnected.set(false);
+        /**
+         * Copies an integer column into an array, a block of raw values per native call
+         * @return One value per row, 0 for SQL NULL
+         */
+        public int[] getIntColumn(int column) throws DatabaseException {
+            int[] values = new int[checkColumn(column).rowCount];
+            resultLock.lock();
+            try {
+                checkClosed();
+                ByteBuffer buffer = blockBuffer();
+                int blockRows = buffer.capacity() / Integer.BYTES;
+                for (int start = 0; start < values.length; ) {
+                    int fetched = Interop.fetchIntColumn(resultHandle, column, start,
+                                                         Math.min(blockRows, values.length - start), buffer);
+                    checkFetched(fetched, "int", column);
+                    buffer.clear();
+                    buffer.asIntBuffer().get(values, start, fetched);
+                    start += fetched;
                 }
+                return values;
+            } catch (DatabaseException e) {
+                throw e;
+            } catch (Exception e) {
+                logger.error("Error fetching column {} as int: {}", column, e.getMessage());
+                throw new DatabaseQueryException("Failed to fetch column", e);
+            } finally {
+                resultLock.unlock();
             }
-        } finally {
-            connectionLock.unlock();
         }
-    }
-    
-    /**
-     * Thread-safe result wrapper
-     */
-    public static class QueryResult implements AutoCloseable {
-        private static final Logger logger = LoggerFactory.getLogger(QueryResult.class);
-        private final int resultHandle;
-        private final ReentrantLock resultLock = new ReentrantLock();
-        private volatile boolean closed = false;
         
-        QueryResult(int resultHandle) {
-            this.resultHandle = resultHandle;
-            logger.trace("Created new query result with handle: {}", resultHandle);
+        /**
+         * Copies an integer column into a long array, a block of raw values per native call
+         * @return One value per row, 0 for SQL NULL
+         */
+        public long[] getLongColumn(int column) throws DatabaseException {
+            long[] values = new long[checkColumn(column).rowCount];
+            resultLock.lock();
+            try {
+                checkClosed();
+                ByteBuffer buffer = blockBuffer();
+                int blockRows = buffer.capacity() / Long.BYTES;
+                for (int start = 0; start < values.length; ) {
+                    int fetched = Interop.fetchLongColumn(resultHandle, column, start,
+                                                          Math.min(blockRows, values.length - start), buffer);
+                    checkFetched(fetched, "long", column);
+                    buffer.clear();
+                    buffer.asLongBuffer().get(values, start, fetched);
+                    start += fetched;
+                }
+                return values;
+            } catch (DatabaseException e) {
+                throw e;
+            } catch (Exception e) {
+                logger.error("Error fetching column {} as long: {}", column, e.getMessage());
+                throw new DatabaseQueryException("Failed to fetch column", e);
+            } finally {
+                resultLock.unlock();
+            }
         }
         
         /**
-         * Thread-safe row count accessor
+         * Copies a floating point column into an array, a block of raw values per native call
+         * @return One value per row, 0 for SQL NULL
          */
-        public int getRowCount() throws DatabaseException {
-            checkClosed();
+        public double[] getDoubleColumn(int column) throws DatabaseException {
+            double[] values = new double[checkColumn(column).rowCount];
             resultLock.lock();
             try {
-                return Interop.getRowCount(resultHandle);
+                checkClosed();
+                ByteBuffer buffer = blockBuffer();
+                int blockRows = buffer.capacity() / Double.BYTES;
+                for (int start = 0; start < values.length; ) {
+                    int fetched = Interop.fetchDoubleColumn(resultHandle, column, start,
+                                                            Math.min(blockRows, values.length - start), buffer);
+                    checkFetched(fetched, "double", column);
+                    buffer.clear();
+                    buffer.asDoubleBuffer().get(values, start, fetched);
+                    start += fetched;
+                }
+                return values;
+            } catch (DatabaseException e) {
+                throw e;
             } catch (Exception e) {
-                logger.error("Error getting row count: {}", e.getMessage());
-                throw new DatabaseQueryException("Failed to get row count", e);
+                logger.error("Error fetching column {} as double: {}", column, e.getMessage());
+                throw new DatabaseQueryException("Failed to fetch column", e);
             } finally {
                 resultLock.unlock();
             }
         }
         
         /**
-         * Thread-safe column count accessor
+         * Reads a block of rows with a single native call
+         * @param startRow First row to read
+         * @param maxRows Maximum number of rows to read
+         * @return Rows in order, each holding one value per column (null for SQL NULL).
+         *         Shorter than maxRows at the end of the result.
          */
-        public int getColumnCount() throws DatabaseException {
-            checkClosed();
+        public List<String[]> fetchRows(int startRow, int maxRows) throws DatabaseException {
+            ResultMetadata meta = metadata();
+            if (startRow < 0 || maxRows < 0) {
+                throw new DatabaseDataException("Index out of bounds");
+            }
+            
+            int count = Math.max(0, Math.min(maxRows, meta.rowCount - startRow));
+            List<String[]> rows = new ArrayList<>(count);
             resultLock.lock();
             try {
-                return Interop.getColumnCount(resultHandle);
-            } catch (Exception e) {
-                logger.error("Error getting column count: {}", e.getMessage());
-                throw new DatabaseQueryException("Failed to get column count", e);
+                checkClosed();
+                while (rows.size() < count) {
+                    readRowBlock(startRow + rows.size(), count - rows.size(), meta.columnNames.length, rows);
+                }
+                return rows;
             } finally {
                 resultLock.unlock();
             }
         }
         
         /**
-         * Thread-safe value accessor
+         * Reads every value of one column, a block of rows per native call
+         * @param column Column index
+         * @return Column values in row order (null for SQL NULL)
          */
-        public String getValue(int row, int column) throws DatabaseException {
-            checkClosed();
+        public List<String> getColumnValues(int column) throws DatabaseException {
+            ResultMetadata meta = checkColumn(column);
+            List<String> values = new ArrayList<>(meta.rowCount);
             resultLock.lock();
             try {
-                int rowCount = Interop.getRowCount(resultHandle);
-                int colCount = Interop.getColumnCount(resultHandle);
-                
-                if (row < 0 || row >= rowCount || column < 0 || column >= colCount) {
-                    logger.error("Index out of bounds: row={}, column={}, rowCount={}, colCount={}", 
-                                row, column, rowCount, colCount);
-                    throw new DatabaseDataException("Index out of bounds");
+                checkClosed();
+                while (values.size() < meta.rowCount) {
+                    readColumnBlock(column, values.size(), meta.rowCount - values.size(), values);
                 }
-                
-                String value = Interop.getValue(resultHandle, row, column);
-                logger.trace("Retrieved value at row={}, column={}: {}", row, column, value);
-                return value;
-            } catch (DatabaseException e) {
-                throw e;
-            } catch (Exception e) {
-                logger.error("Error getting value at row={}, column={}: {}", row, column, e.getMessage());
-                throw new DatabaseQueryException("Failed to get value", e);
+                return values;
             } finally {
                 resultLock.unlock();
             }
@@ -387,34 +1919,47 @@ public class DatabaseConnector implements AutoCloseable {
          * Returns a thread-safe defensive copy
          */
         public List<Map<String, String>> toList() throws DatabaseException {
-            checkClosed();
-            resultLock.lock();
-            try {
-                logger.debug("Converting result set to list of maps");
-                int rowCount = Interop.getRowCount(resultHandle);
-                int colCount = Interop.getColumnCount(resultHandle);
-                
-                List<Map<String, String>> result = new ArrayList<>(rowCount);
-                for (int i = 0; i < rowCount; i++) {
+            logger.debug("Converting result set to list of maps");
+            ResultMetadata meta = metadata();
+            String[] columnNames = meta.columnNames;
+            
+            List<Map<String, String>> result = new ArrayList<>(meta.rowCount);
+            for (int start = 0; start < meta.rowCount; start += BLOCK_ROWS) {
+                for (String[] values : fetchRows(start, BLOCK_ROWS)) {
                     Map<String, String> row = new HashMap<>();
-                    for (int j = 0; j < colCount; j++) {
-                        String columnName = Interop.getColumnName(resultHandle, j);
-                        String value = Interop.getValue(resultHandle, i, j);
-                        row.put(columnName, value);
+                    for (int j = 0; j < columnNames.length; j++) {
+                        row.put(columnNames[j], values[j]);
                     }
                     result.add(row);
                 }
-                
-                logger.debug("Successfully converted result set to list with {} rows", result.size());
-                return result;
-            } catch (DatabaseException e) {
-                throw e;
-            } catch (Exception e) {
-                logger.error("Error converting result to list: {}", e.getMessage());
-                throw new DatabaseQueryException("Failed to convert result to list", e);
+            }
+            
+            logger.debug("Successfully converted result set to list with {} rows", result.size());
+            return result;
+        }
+        
+        /**
+         * Copies the whole result into an immutable, lock-free snapshot and frees the
+         * native result right away. Use this when several threads read the same result.
+         * @return Snapshot of every row; this result is closed afterwards
+         */
+        public ResultSnapshot snapshot() throws DatabaseException {
+            ResultMetadata meta = metadata();
+            ResultSnapshot.Builder builder = new ResultSnapshot.Builder(meta.columnNames, meta.rowCount);
+            try {
+                for (int start = 0; start < meta.rowCount; start += BLOCK_ROWS) {
+                    for (String[] row : fetchRows(start, BLOCK_ROWS)) {
+                        builder.addRow(row);
+                    }
+                }
             } finally {
-                resultLock.unlock();
+                close();
             }
+            
+            ResultSnapshot snapshot = builder.build();
+            logger.debug("Snapshot taken with {} rows and {} distinct values",
+                         snapshot.getRowCount(), snapshot.getDistinctValueCount());
+            return snapshot;
         }
         
         /**
@@ -422,37 +1967,185 @@ public class DatabaseConnector implements AutoCloseable {
          * @return Thread-safe ConcurrentHashMap of results
          */
         public ConcurrentHashMap<String, List<String>> toConcurrentMap() throws DatabaseException {
-            checkClosed();
+            logger.debug("Converting result set to concurrent map");
+            String[] columnNames = metadata().columnNames;
+            
+            ConcurrentHashMap<String, List<String>> result = new ConcurrentHashMap<>();
+            for (int j = 0; j < columnNames.length; j++) {
+                result.put(columnNames[j], getColumnValues(j));
+            }
+            
+            logger.debug("Successfully converted result set to concurrent map with {} columns", result.size());
+            return result;
+        }
+        
+        private ResultMetadata checkColumn(int column) throws DatabaseException {
+            ResultMetadata meta = metadata();
+            if (column < 0 || column >= meta.columnNames.length) {
+                logger.error("Column index out of bounds: column={}, colCount={}", column, meta.columnNames.length);
+                throw new DatabaseDataException("Index out of bounds");
+            }
+            return meta;
+        }
+        
+        private void checkCell(int row, int column) throws DatabaseException {
+            ResultMetadata meta = metadata();
+            if (row < 0 || row >= meta.rowCount || column < 0 || column >= meta.columnNames.length) {
+                logger.error("Index out of bounds: row={}, column={}, rowCount={}, colCount={}", 
+                            row, column, meta.rowCount, meta.columnNames.length);
+                throw new DatabaseDataException("Index out of bounds");
+            }
+        }
+        
+        private DatabaseDataException typedAccessError(String type, int row, int column, Exception e) {
+            logger.error("Error reading {} at row={}, column={}: {}", type, row, column, e.getMessage());
+            return new DatabaseDataException("Failed to read " + type + " value at row " + row
+                                             + ", column " + column, e);
+        }
+        
+        private void checkFetched(int fetched, String type, int column) throws DatabaseDataException {
+            // Fixed-width values always fit, so anything but a positive count is an error
+            if (fetched <= 0) {
+                logger.error("Failed to fetch column {} as {}", column, type);
+                throw new DatabaseDataException("Column " + column + " cannot be read as " + type);
+            }
+        }
+        
+        private ResultMetadata metadata() throws DatabaseException {
+            ResultMetadata meta = metadata;
+            if (meta != null) {
+                checkClosed();
+                return meta;
+            }
+            
             resultLock.lock();
             try {
-                logger.debug("Converting result set to concurrent map");
-                int rowCount = Interop.getRowCount(resultHandle);
-                int colCount = Interop.getColumnCount(resultHandle);
-                
-                ConcurrentHashMap<String, List<String>> result = new ConcurrentHashMap<>();
-                
-                // Create column lists
-                for (int j = 0; j < colCount; j++) {
-                    String columnName = Interop.getColumnName(resultHandle, j);
-                    List<String> columnValues = new ArrayList<>(rowCount);
-                    for (int i = 0; i < rowCount; i++) {
-                        columnValues.add(Interop.getValue(resultHandle, i, j));
+                checkClosed();
+                if (metadata == null) {
+                    int rowCount = Interop.getRowCount(resultHandle);
+                    String[] columnNames = Interop.getColumnNames(resultHandle);
+                    if (rowCount < 0 || columnNames == null) {
+                        throw new DatabaseQueryException("Failed to read result metadata");
                     }
-                    result.put(columnName, columnValues);
+                    metadata = new ResultMetadata(rowCount, columnNames);
                 }
-                
-                logger.debug("Successfully converted result set to concurrent map with {} columns", result.size());
-                return result;
+                return metadata;
             } catch (DatabaseException e) {
                 throw e;
             } catch (Exception e) {
-                logger.error("Error converting result to concurrent map: {}", e.getMessage());
-                throw new DatabaseQueryException("Failed to convert result to concurrent map", e);
+                logger.error("Error reading result metadata: {}", e.getMessage());
+                throw new DatabaseQueryException("Failed to read result metadata", e);
             } finally {
                 resultLock.unlock();
             }
         }
         
+        /**
+         * Fetches up to maxRows rows into the block buffer and decodes them.
+         * Caller must hold resultLock.
+         */
+        private void readRowBlock(int startRow, int maxRows, int columnCount, List<String[]> rows)
+                throws DatabaseException {
+            ByteBuffer buffer = blockBuffer();
+            int fetched;
+            try {
+                fetched = Interop.fetchRows(resultHandle, startRow, maxRows, buffer);
+            } catch (Exception e) {
+                logger.error("Error fetching rows from {}: {}", startRow, e.getMessage());
+                throw new DatabaseQueryException("Failed to fetch rows", e);
+            }
+            if (fetched < 0) {
+                throw new DatabaseQueryException("Failed to fetch rows starting at " + startRow);
+            }
+            if (fetched == 0) {
+                // A single row did not fit, retry with a bigger buffer
+                growBlockBuffer();
+                return;
+            }
+            
+            buffer.clear();
+            for (int i = 0; i < fetched; i++) {
+                String[] row = new String[columnCount];
+                for (int j = 0; j < columnCount; j++) {
+                    row[j] = decodeValue(buffer);
+                }
+                rows.add(row);
+            }
+        }
+        
+        /**
+         * Fetches up to maxRows values of one column into the block buffer and decodes them.
+         * Caller must hold resultLock.
+         */
+        private void readColumnBlock(int column, int startRow, int maxRows, List<String> values)
+                throws DatabaseException {
+            ByteBuffer buffer = blockBuffer();
+            int fetched;
+            try {
+                fetched = Interop.fetchColumn(resultHandle, column, startRow, maxRows, buffer);
+            } catch (Exception e) {
+                logger.error("Error fetching column {} from row {}: {}", column, startRow, e.getMessage());
+                throw new DatabaseQueryException("Failed to fetch column", e);
+            }
+            if (fetched < 0) {
+                throw new DatabaseQueryException("Failed to fetch column " + column);
+            }
+            if (fetched == 0) {
+                growBlockBuffer();
+                return;
+            }
+            
+            buffer.clear();
+            for (int i = 0; i < fetched; i++) {
+                values.add(decodeValue(buffer));
+            }
+        }
+        
+        /**
+         * Decodes one value written by the native side: an int length (-1 for NULL)
+         * followed by that many UTF-8 bytes
+         */
+        private String decodeValue(ByteBuffer buffer) {
+            int length = buffer.getInt();
+            if (length < 0) {
+                return null;
+            }
+            if (decodeBuffer == null || decodeBuffer.length < length) {
+                decodeBuffer = new byte[Math.max(length, 1024)];
+            }
+            buffer.get(decodeBuffer, 0, length);
+            return new String(decodeBuffer, 0, length, StandardCharsets.UTF_8);
+        }
+        
+        private ByteBuffer blockBuffer() {
+            if (blockBuffer == null) {
+                blockBuffer = ByteBuffer.allocateDirect(INITIAL_BLOCK_BYTES).order(ByteOrder.nativeOrder());
+            }
+            return blockBuffer;
+        }
+        
+        private void growBlockBuffer() throws DatabaseDataException {
+            int capacity = blockBuffer.capacity();
+            if (capacity >= MAX_BLOCK_BYTES) {
+                throw new DatabaseDataException("Row larger than " + MAX_BLOCK_BYTES + " bytes");
+            }
+            logger.debug("Growing block buffer to {} bytes", capacity * 2);
+            blockBuffer = ByteBuffer.allocateDirect(capacity * 2).order(ByteOrder.nativeOrder());
+        }
+        
+        /**
+         * Row count and column names of a result, read once
+         */
+        private static final class ResultMetadata {
+            final int rowCount;
+            final String[] columnNames;
+            
+            ResultMetadata(int rowCount, String[] columnNames) {
+                this.rowCount = rowCount;
+                this.columnNames = columnNames;
+            }
+        }
+        
         private void checkClosed() throws DatabaseException {
             if (closed) {
                 logger.error("Attempted to access closed result set");
@@ -474,10 +2167,8 @@ public class DatabaseConnector implements AutoCloseable {
             try {
                 if (!closed) {
                     try {
-                        Interop.freeResult(resultHandle);
+                        registration.release();
                         logger.trace("Query result with handle {} freed", resultHandle);
-                    } catch (Exception e) {
-                        logger.error("Error freeing result resources: {}", e.getMessage(), e);
                     } finally {
                         closed = true;
                     }
@@ -486,19 +2177,148 @@ public class DatabaseConnector implements AutoCloseable {
                 resultLock.unlock();
             }
         }
+    }
+    
+    /**
+     * Connection-side record of an open cursor. The connector holds this rather
+     * than the ResultCursor, so an abandoned cursor can become unreachable and be
+     * cleaned up.
+     */
+    private static final class CursorState {
+        final String name;
+        final Thread owner = Thread.currentThread();
+        final int number;
+        NativeHandleRegistry.Registration registration;
+        // Set once the cursor transaction has been committed, guarded by connectionLock
+        boolean committed = false;
+        
+        CursorState(int number, String name) {
+            this.number = number;
+            this.name = name;
+        }
+    }
+    
+    /**
+     * Forward-only cursor over a query result, backed by a server-side cursor.
+     * At most fetchSize rows are held in memory at a time.
+     */
+    public class ResultCursor implements Iterator<String[]>, AutoCloseable {
+        private final CursorState state;
+        private final String name;
+        private final int fetchSize;
+        private List<String[]> block = Collections.emptyList();
+        private int position = 0;
+        private boolean exhausted = false;
+        private boolean closed = false;
+        private String[] columnNames;
+        
+        private ResultCursor(CursorState state, int fetchSize) {
+            this.state = state;
+            this.name = state.name;
+            this.fetchSize = fetchSize;
+            state.registration = handleRegistry.register(this, NativeHandleRegistry.Kind.CURSOR, state.number,
+                                                         endCursorAction(state));
+        }
+        
+        /**
+         * Reads the next row, fetching the next block from the server when needed
+         * @return The next row, or null once all rows have been read
+         */
+        public String[] nextRow() throws DatabaseException {
+            if (position == block.size() && !fetchBlock()) {
+                return null;
+            }
+            return block.get(position++);
+        }
         
         /**
-         * Ensures resources are freed even if close() is not called
+         * @return Column names, available after the first row has been read
          */
+        public String[] getColumnNames() {
+            return columnNames == null ? null : columnNames.clone();
+        }
+        
         @Override
-        protected void finalize() throws Throwable {
+        public boolean hasNext() {
             try {
-                if (!closed) {
-                    logger.warn("Result set was not properly closed, cleaning up in finalizer");
-                    close();
+                return position < block.size() || fetchBlock();
+            } catch (DatabaseException e) {
+                throw new UncheckedDatabaseException(e);
+            }
+        }
+        
+        @Override
+        public String[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return block.get(position++);
+        }
+        
+        /**
+         * @return Stream over the remaining rows; closing the stream closes the cursor
+         */
+        public Stream<String[]> stream() {
+            Spliterator<String[]> rows = Spliterators.spliteratorUnknownSize(this,
+                    Spliterator.ORDERED | Spliterator.NONNULL);
+            return StreamSupport.stream(rows, false).onClose(this::close);
+        }
+        
+        /**
+         * Fetches the next block, closing the cursor once the server has no more rows
+         * @return true if at least one row was fetched
+         */
+        private boolean fetchBlock() throws DatabaseException {
+            if (closed || exhausted) {
+                close();
+                return false;
+            }
+            
+            connectionLock.lock();
+            try {
+                if (activeCursor != state) {
+                    closed = true;
+                    throw new DatabaseStateException("Cursor was closed with its connection");
+                }
+                try (QueryResult result = runQuery("FETCH FORWARD " + fetchSize + " FROM " + name)) {
+                    if (columnNames == null) {
+                        columnNames = result.getColumnNames();
+                    }
+                    block = result.fetchRows(0, fetchSize);
+                }
+                position = 0;
+                exhausted = block.size() < fetchSize;
+                logger.trace("Fetched {} rows from cursor {}", block.size(), name);
+            } catch (DatabaseException e) {
+                close();
+                throw e;
+            } finally {
+                connectionLock.unlock();
+            }
+            
+            if (block.isEmpty()) {
+                close();
+                return false;
+            }
+            return true;
+        }
+        
+        /**
+         * Closes the server-side cursor and releases the connection to other statements
+         */
+        @Override
+        public void close() {
+            connectionLock.lock();
+            try {
+                if (closed) {
+                    return;
                 }
+                closed = true;
+                block = Collections.emptyList();
+                position = 0;
+                state.registration.release();
             } finally {
-                super.finalize();
+                connectionLock.unlock();
             }
         }
     }
@@ -507,6 +2327,8 @@ public class DatabaseConnector implements AutoCloseable {
      * Base database exception class
      */
     public static class DatabaseException extends Exception {
+        private String sqlState;
+        
         public DatabaseException(String message) {
             super(message);
         }
@@ -514,6 +2336,14 @@ public class DatabaseConnector implements AutoCloseable {
         public DatabaseException(String message, Throwable cause) {
             super(message, cause);
         }
+        
+        /**
+         * @return SQLSTATE the server reported for a failed statement, or null if
+         *         there was none or it was not recorded
+         */
+        public String getSqlState() {
+            return sqlState;
+        }
     }
     
     /**
@@ -594,6 +2424,21 @@ public class DatabaseConnector implements AutoCloseable {
         }
     }
     
+    /**
+     * Unchecked wrapper for database errors raised where checked exceptions
+     * cannot be thrown, such as from a cursor's Iterator or Stream
+     */
+    public static class UncheckedDatabaseException extends RuntimeException {
+        public UncheckedDatabaseException(DatabaseException cause) {
+            super(cause.getMessage(), cause);
+        }
+        
+        @Override
+        public synchronized DatabaseException getCause() {
+            return (DatabaseException) super.getCause();
+        }
+    }
+    
     /**
      * Example showing how to use the connector with proper thread safety,
      * error handling, and logging
@@ -679,6 +2524,62 @@ class Interop {
     public static native int getColumnCount(int resultId);
     public static native String getColumnName(int resultId, int column);
     public static native String getValue(int resultId, int row, int column);
+    public static native String[] getColumnNames(int resultId);
+    // Block fetches write each value as a native-order int length (-1 for NULL) followed by
+    // that many UTF-8 bytes, starting at position 0 of the direct buffer. They return the
+    // number of whole rows written, 0 if the first row does not fit, or -1 on error.
+    public static native int fetchRows(int resultId, int startRow, int maxRows, ByteBuffer buffer);
+    public static native int fetchColumn(int resultId, int column, int startRow, int maxRows, ByteBuffer buffer);
+    // Typed getters decode the Postgres binary format directly and throw if the column
+    // type does not convert; NULL reads as zero/false, so check isNull when it matters.
+    // Timestamps are microseconds since 2000-01-01 UTC.
+    public static native boolean isNull(int resultId, int row, int column);
+    public static native int getIntValue(int resultId, int row, int column);
+    public static native long getLongValue(int resultId, int row, int column);
+    public static native double getDoubleValue(int resultId, int row, int column);
+    public static native boolean getBooleanValue(int resultId, int row, int column);
+    public static native long getTimestampValue(int resultId, int row, int column);
+    // Fixed-width column fetches write raw native-order values (NULL as 0) and return
+    // the number of rows written, or -1 if the column type does not convert
+    public static native int fetchIntColumn(int resultId, int column, int startRow, int maxRows, ByteBuffer buffer);
+    public static native int fetchLongColumn(int resultId, int column, int startRow, int maxRows, ByteBuffer buffer);
+    public static native int fetchDoubleColumn(int resultId, int column, int startRow, int maxRows, ByteBuffer buffer);
     public static native String getLastError(int connectionId);
     public static native boolean isConnectionValid(int connectionId);
+    // SQLSTATE of the last error on the connection, or null if the error had none
+    public static native String getLastSqlState(int connectionId);
+    // libpq PQtransactionStatus: 0 idle, 1 command active, 2 in a transaction block,
+    // 3 in a failed transaction block, 4 connection bad
+    public static native int getTransactionStatus(int connectionId);
+    public static native int prepareStatement(int connectionId, String sql);
+    public static native int bindIntParameter(int connectionId, int statementId, int paramIndex, int value);
+    public static native int bindStringParameter(int connectionId, int statementId, int paramIndex, String value);
+    public static native int executePrepared(int connectionId, int statementId);
+    // Rows affected by the command that produced the result
+    public static native int getAffectedRows(int resultId);
+    public static native void closePrepared(int connectionId, int statementId);
+    // Sends one execution per parameter set (text values, null for NULL) in pipeline
+    // mode; returns rows affected per set, or null if any execution failed
+    public static native int[] executePreparedBatch(int connectionId, int statementId, String[][] parameterSets);
+    // COPY streaming: start returns <= 0 on error. copyInData sends the first length bytes
+    // of the direct buffer; copyInEnd finishes the load (or aborts it when errorMessage is
+    // non-null) and returns the row count. copyOutData fills the buffer from position 0 and
+    // returns the byte count, 0 once the data is exhausted, or -1 on error.
+    public static native int copyInStart(int connectionId, String copySql);
+    public static native int copyInData(int connectionId, ByteBuffer buffer, int length);
+    public static native long copyInEnd(int connectionId, String errorMessage);
+    public static native int copyOutStart(int connectionId, String copySql);
+    public static native int copyOutData(int connectionId, ByteBuffer buffer);
+    public static native long copyOutEnd(int connectionId);
+    public static native void cancelCopyOut(int connectionId);
+    // Pipeline mode: each statement is sent and followed by its own sync without waiting,
+    // then results are read back in send order. Reading a result also consumes the sync
+    // after it. Query results return a handle (<= 0 on error); other statements return
+    // rows affected (-1 on error).
+    public static native int enterPipeline(int connectionId);
+    public static native int exitPipeline(int connectionId);
+    public static native int pipelineSend(int connectionId, String sql);
+    public static native int pipelineSync(int connectionId);
+    public static native int pipelineNextQueryResult(int connectionId);
+    public static native int pipelineNextUpdateResult(int connectionId);
 } 
\ No newline at end of file
@@ -0,0 +1,176 @@
+package com.modular.database;
+
+import java.lang.ref.Cleaner;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the native result and statement handles and the server-side cursors
+ * opened on one connection. Each handle is freed exactly once: by its owner's close(), or by a Cleaner
+ * shortly after the owner becomes unreachable, which is reported as a leak.
+ * Unlike finalize(), this does not slow down allocation or keep the owner
+ * alive for an extra GC cycle.
+ */
+final class NativeHandleRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(NativeHandleRegistry.class);
+    // One daemon thread shared by every connection
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    /**
+     * Kind of native resource behind a handle
+     */
+    enum Kind {
+        RESULT,
+        STATEMENT,
+        CURSOR
+    }
+
+    private final AtomicInteger openResults = new AtomicInteger(0);
+    private final AtomicInteger openStatements = new AtomicInteger(0);
+    private final AtomicInteger openCursors = new AtomicInteger(0);
+    private final AtomicLong leakedHandles = new AtomicLong(0);
+    private final AtomicLong registrations = new AtomicLong(0);
+    // Capture the allocation stack for one registration in this many; 0 disables
+    private volatile int allocationSampleRate = 100;
+
+    /**
+     * Registers a native handle owned by the given object
+     * @param owner Object whose reachability governs the handle; not referenced by free
+     * @param kind Kind of handle, for the open-handle gauges
+     * @param handle Native handle, for log messages
+     * @param free Frees the handle; must not capture the owner or it will never be cleaned
+     * @return Registration the owner uses to free the handle when it is closed
+     */
+    Registration register(Object owner, Kind kind, int handle, Runnable free) {
+        int rate = allocationSampleRate;
+        Throwable allocationSite = rate > 0 && registrations.incrementAndGet() % rate == 0
+                ? new Throwable(kind + " handle " + handle + " allocated here")
+                : null;
+
+        counter(kind).incrementAndGet();
+        HandleState state = new HandleState(this, kind, handle, free, allocationSite);
+        return new Registration(state, CLEANER.register(owner, state));
+    }
+
+    private AtomicInteger counter(Kind kind) {
+        switch (kind) {
+            case RESULT:
+                return openResults;
+            case STATEMENT:
+                return openStatements;
+            default:
+                return openCursors;
+        }
+    }
+
+    /**
+     * @return Number of result handles not yet freed
+     */
+    int getOpenResults() {
+        return openResults.get();
+    }
+
+    /**
+     * @return Number of statement handles not yet freed
+     */
+    int getOpenStatements() {
+        return openStatements.get();
+    }
+
+    /**
+     * @return Number of cursors not yet closed
+     */
+    int getOpenCursors() {
+        return openCursors.get();
+    }
+
+    /**
+     * @return Number of handles that were freed by the Cleaner instead of close()
+     */
+    long getLeakedHandles() {
+        return leakedHandles.get();
+    }
+
+    /**
+     * @param allocationSampleRate Record the allocation site of one handle in this many,
+     *                             so leaks can be traced; 1 records all, 0 disables
+     */
+    void setAllocationSampleRate(int allocationSampleRate) {
+        this.allocationSampleRate = Math.max(0, allocationSampleRate);
+    }
+
+    /**
+     * Handle to a registered native resource
+     */
+    static final class Registration {
+        private final HandleState state;
+        private final Cleaner.Cleanable cleanable;
+
+        private Registration(HandleState state, Cleaner.Cleanable cleanable) {
+            this.state = state;
+            this.cleanable = cleanable;
+        }
+
+        /**
+         * Frees the handle now if it has not been freed yet
+         */
+        void release() {
+            state.explicit = true;
+            cleanable.clean();
+        }
+
+        boolean isReleased() {
+            return state.freed.get();
+        }
+    }
+
+    /**
+     * Cleanup action; holds everything needed to free the handle except the owner
+     */
+    private static final class HandleState implements Runnable {
+        private final NativeHandleRegistry registry;
+        private final Kind kind;
+        private final int handle;
+        private final Runnable free;
+        private final Throwable allocationSite;
+        private final AtomicBoolean freed = new AtomicBoolean(false);
+        private volatile boolean explicit = false;
+
+        HandleState(NativeHandleRegistry registry, Kind kind, int handle, Runnable free, Throwable allocationSite) {
+            this.registry = registry;
+            this.kind = kind;
+            this.handle = handle;
+            this.free = free;
+            this.allocationSite = allocationSite;
+        }
+
+        @Override
+        public void run() {
+            if (!freed.compareAndSet(false, true)) {
+                return;
+            }
+
+            if (!explicit) {
+                registry.leakedHandles.incrementAndGet();
+                if (allocationSite != null) {
+                    logger.warn("{} handle {} was not closed, freeing it after garbage collection",
+                                kind, handle, allocationSite);
+                } else {
+                    logger.warn("{} handle {} was not closed, freeing it after garbage collection "
+                                + "(allocation site not sampled)", kind, handle);
+                }
+            }
+
+            try {
+                free.run();
+            } catch (Exception e) {
+                logger.error("Error freeing {} handle {}: {}", kind, handle, e.getMessage(), e);
+            } finally {
+                registry.counter(kind).decrementAndGet();
+            }
+        }
+    }
+}
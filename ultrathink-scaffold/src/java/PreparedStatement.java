@@ -1,5 +1,10 @@
 package com.modular.database;
 
+import com.modular.database.DatabaseConnector.DatabaseException;
+import com.modular.database.DatabaseConnector.QueryResult;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import org.slf4j.Logger;
@@ -7,22 +12,33 @@ import org.slf4j.LoggerFactory;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Thread-safe prepared statement wrapper
+ * Thread-safe prepared statement wrapper.
+ * Statements obtained from DatabaseConnector.prepare() go back to the connector's
+ * statement cache when closed, so the same SQL is not parsed and planned again.
+ * Each prepare() returns a new PreparedStatement around the cached native
+ * statement; once closed, it stays closed even after the native statement has
+ * been handed to another caller. A reused native statement still holds the
+ * values its previous user bound, so execution is refused until every parameter
+ * bound on it before has been bound again.
  */
 public class PreparedStatement implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(PreparedStatement.class);
-    private final int connectionHandle;
-    private final int statementHandle;
+    private final DatabaseConnector connector;
+    private final Handle handle;
     private final ReentrantLock statementLock = new ReentrantLock();
     private volatile boolean closed = false;
+    // Text form of the bound parameters, kept for addBatch(); guarded by statementLock
+    private String[] parameters = new String[0];
+    // Indices bound through this PreparedStatement; guarded by statementLock
+    private final BitSet bound = new BitSet();
+    private final List<String[]> batch = new ArrayList<>();
     
     /**
-     * Creates a prepared statement wrapper
+     * Creates a prepared statement wrapper that holds the native statement until closed
      */
-    PreparedStatement(int connectionHandle, int statementHandle) {
-        this.connectionHandle = connectionHandle;
-        this.statementHandle = statementHandle;
-        logger.trace("Created prepared statement with handle: {}", statementHandle);
+    PreparedStatement(DatabaseConnector connector, Handle handle) {
+        this.connector = connector;
+        this.handle = handle;
     }
     
     /**
@@ -37,13 +53,14 @@ public class PreparedStatement implements AutoCloseable {
             throw new DatabaseException("Parameter index must be >= 1");
         }
         
-        statementLock.lock();
+        lockOpen();
         try {
             logger.trace("Binding integer parameter at index {}: {}", index, value);
-            int result = Interop.bindIntParameter(connectionHandle, statementHandle, index, value);
+            int result = Interop.bindIntParameter(handle.connectionHandle, handle.statementHandle, index, value);
             if (result <= 0) {
                 throw new DatabaseException("Failed to bind integer parameter");
             }
+            recordParameter(index, Integer.toString(value));
         } catch (Exception e) {
             logger.error("Error binding integer parameter: {}", e.getMessage());
             throw new DatabaseException("Error binding integer parameter", e);
@@ -64,13 +81,14 @@ public class PreparedStatement implements AutoCloseable {
             throw new DatabaseException("Parameter index must be >= 1");
         }
         
-        statementLock.lock();
+        lockOpen();
         try {
             logger.trace("Binding string parameter at index {}: {}", index, value);
-            int result = Interop.bindStringParameter(connectionHandle, statementHandle, index, value);
+            int result = Interop.bindStringParameter(handle.connectionHandle, handle.statementHandle, index, value);
             if (result <= 0) {
                 throw new DatabaseException("Failed to bind string parameter");
             }
+            recordParameter(index, value);
         } catch (Exception e) {
             logger.error("Error binding string parameter: {}", e.getMessage());
             throw new DatabaseException("Error binding string parameter", e);
@@ -86,19 +104,15 @@ public class PreparedStatement implements AutoCloseable {
      */
     public QueryResult execute() throws DatabaseException {
         checkClosed();
-        statementLock.lock();
+        lockOpen();
         try {
+            checkParametersBound();
             logger.debug("Executing prepared statement");
-            int resultId = Interop.executePrepared(connectionHandle, statementHandle);
-            if (resultId <= 0) {
-                String errorMessage = Interop.getLastError(connectionHandle);
-                logger.error("Prepared statement execution failed: {}", errorMessage);
-                throw new DatabaseException("Prepared statement execution failed: " + errorMessage);
-            }
-            
-            QueryResult result = new QueryResult(resultId);
+            QueryResult result = connector.executePrepared(this);
             logger.debug("Prepared statement executed successfully");
             return result;
+        } catch (DatabaseException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error executing prepared statement: {}", e.getMessage());
             throw new DatabaseException("Error executing prepared statement", e);
@@ -107,95 +121,212 @@ public class PreparedStatement implements AutoCloseable {
         }
     }
     
-    private void checkClosed() throws DatabaseException {
-        if (closed) {
-            throw new DatabaseException("Prepared statement is closed");
+    /**
+     * Executes the prepared statement as a non-query
+     * @return Number of rows affected
+     * @throws DatabaseException if execution fails
+     */
+    public int executeUpdate() throws DatabaseException {
+        checkClosed();
+        lockOpen();
+        try {
+            checkParametersBound();
+            logger.debug("Executing prepared update");
+            return connector.executePreparedUpdate(this);
+        } catch (DatabaseException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error executing prepared update: {}", e.getMessage());
+            throw new DatabaseException("Error executing prepared update", e);
+        } finally {
+            statementLock.unlock();
         }
     }
     
     /**
-     * Thread-safe close operation
+     * Adds the currently bound parameters to the batch. Parameters stay bound,
+     * so only the ones that change need to be bound again for the next entry;
+     * parameters never bound are sent as NULL.
+     * @throws DatabaseException if the statement is closed
      */
-    @Override
-    public void close() {
-        if (closed) {
-            return;
+    public void addBatch() throws DatabaseException {
+        checkClosed();
+        lockOpen();
+        try {
+            batch.add(parameters.clone());
+        } finally {
+            statementLock.unlock();
         }
-        
+    }
+    
+    /**
+     * Discards all parameter sets added with addBatch()
+     */
+    public void clearBatch() {
         statementLock.lock();
         try {
-            if (!closed) {
-                logger.debug("Closing prepared statement");
-                try {
-                    Interop.closePrepared(connectionHandle, statementHandle);
-                    logger.trace("Prepared statement with handle {} closed", statementHandle);
-                } catch (Exception e) {
-                    logger.error("Error closing prepared statement: {}", e.getMessage());
-                } finally {
-                    closed = true;
-                }
+            batch.clear();
+        } finally {
+            statementLock.unlock();
+        }
+    }
+    
+    /**
+     * Executes the statement once per parameter set added with addBatch(), pipelining
+     * the executions in a single transaction instead of one round trip per set.
+     * The batch is cleared afterwards, whether or not it succeeded.
+     * @return Number of rows affected by each parameter set, in the order they were added
+     * @throws DatabaseConnectionException if the connection is lost; nothing is committed
+     * @throws DatabaseTransactionException if any execution fails otherwise; nothing is committed
+     */
+    public int[] executeBatch() throws DatabaseException {
+        checkClosed();
+        lockOpen();
+        try {
+            if (batch.isEmpty()) {
+                return new int[0];
             }
+            logger.debug("Executing prepared statement batch with {} parameter sets", batch.size());
+            return connector.executePreparedBatch(this, batch);
         } finally {
+            batch.clear();
+            statementLock.unlock();
+        }
+    }
+    
+    /**
+     * Caller must hold statementLock
+     */
+    private void recordParameter(int index, String value) {
+        if (index > parameters.length) {
+            parameters = Arrays.copyOf(parameters, index);
+        }
+        parameters[index - 1] = value;
+        bound.set(index);
+        handle.parameterCount = Math.max(handle.parameterCount, index);
+    }
+    
+    /**
+     * Rejects execution while a parameter bound on the native statement by this or
+     * an earlier user is unbound here, so a stale value is never sent.
+     * Caller must hold statementLock.
+     * @throws DatabaseException if a parameter is unbound
+     */
+    private void checkParametersBound() throws DatabaseException {
+        int unbound = bound.nextClearBit(1);
+        if (unbound <= handle.parameterCount) {
+            throw new DatabaseException("Parameter " + unbound + " is not bound");
+        }
+    }
+    
+    private void checkClosed() throws DatabaseException {
+        if (closed) {
+            throw new DatabaseException("Prepared statement is closed");
+        }
+    }
+    
+    /**
+     * Takes statementLock, checking again once it is held, since a close() that
+     * ran while this thread waited may have handed the native statement on
+     * @throws DatabaseException if the statement is closed
+     */
+    private void lockOpen() throws DatabaseException {
+        statementLock.lock();
+        if (closed) {
             statementLock.unlock();
+            throw new DatabaseException("Prepared statement is closed");
         }
     }
     
+    String getSql() {
+        return handle.sql;
+    }
+    
+    int getConnectionHandle() {
+        return handle.connectionHandle;
+    }
+    
+    int getStatementHandle() {
+        return handle.statementHandle;
+    }
+    
     /**
-     * Ensures resources are freed even if close() is not called
+     * Returns the native statement to the connector's cache, or frees it if the
+     * cache does not take it. The next user must bind every parameter again before
+     * executing. Closing again does nothing.
      */
     @Override
-    protected void finalize() throws Throwable {
+    public void close() {
+        if (!markClosed()) {
+            return;
+        }
+        if (!connector.returnToCache(handle)) {
+            handle.release();
+        }
+    }
+    
+    /**
+     * Closes the statement and frees the native statement instead of caching it
+     */
+    void release() {
+        if (markClosed()) {
+            handle.release();
+        }
+    }
+    
+    /**
+     * @return Whether this call closed the statement; false if it was already closed
+     */
+    private boolean markClosed() {
+        statementLock.lock();
         try {
-            if (!closed) {
-                logger.warn("Prepared statement was not properly closed, cleaning up in finalizer");
-                close();
+            if (closed) {
+                return false;
             }
+            closed = true;
+            parameters = new String[0];
+            bound.clear();
+            batch.clear();
+            return true;
         } finally {
-            super.finalize();
+            statementLock.unlock();
         }
     }
-}
-
-// Add to Interop class
-public static native int prepareStatement(int connectionId, String sql);
-public static native int bindIntParameter(int connectionId, int statementId, int paramIndex, int value);
-public static native int bindStringParameter(int connectionId, int statementId, int paramIndex, String value);
-public static native int executePrepared(int connectionId, int statementId);
-public static native void closePrepared(int connectionId, int statementId);
-
-// Add to DatabaseConnector class
-/**
- * Prepares a SQL statement for repeated execution
- * @param sql SQL statement with placeholders (?)
- * @return PreparedStatement object
- * @throws DatabaseException if preparation fails
- */
-public PreparedStatement prepare(String sql) throws DatabaseException {
-    if (!isConnected.get()) {
-        logger.error("Attempted to prepare statement while not connected");
-        throw new DatabaseStateException("Not connected to database");
-    }
     
-    logger.debug("Preparing statement: {}", sql);
-    connectionLock.lock();
-    try {
-        validateConnection();
+    /**
+     * Native prepared statement, owned by at most one open PreparedStatement at a
+     * time and otherwise parked in the connector's statement cache
+     */
+    static final class Handle {
+        final String sql;
+        final int connectionHandle;
+        final int statementHandle;
+        // Highest index bound by any user; guarded by the owner's statementLock and
+        // published to the next owner through the connector's cache
+        private int parameterCount = 0;
+        private final NativeHandleRegistry.Registration registration;
+        
+        Handle(DatabaseConnector connector, String sql, int connectionHandle, int statementHandle) {
+            this.sql = sql;
+            this.connectionHandle = connectionHandle;
+            this.statementHandle = statementHandle;
+            this.registration = connector.getHandleRegistry().register(this, NativeHandleRegistry.Kind.STATEMENT,
+                    statementHandle, closeStatementAction(connectionHandle, statementHandle));
+            logger.trace("Created prepared statement with handle: {}", statementHandle);
+        }
         
-        int statementId = Interop.prepareStatement(connectionHandle, sql);
-        if (statementId <= 0) {
-            String errorMessage = Interop.getLastError(connectionHandle);
-            logger.error("Statement preparation failed: {}", errorMessage);
-            throw new DatabaseException("Failed to prepare statement: " + errorMessage);
+        // Static so the cleanup action cannot hold a reference to the handle
+        private static Runnable closeStatementAction(int connectionHandle, int statementHandle) {
+            return () -> Interop.closePrepared(connectionHandle, statementHandle);
         }
         
-        logger.debug("Statement prepared successfully");
-        return new PreparedStatement(connectionHandle, statementId);
-    } catch (DatabaseException e) {
-        throw e;
-    } catch (Exception e) {
-        logger.error("Error preparing statement: {}", e.getMessage());
-        throw new DatabaseException("Error preparing statement", e);
-    } finally {
-        connectionLock.unlock();
-    }
-} 
\ No newline at end of file
+        /**
+         * Frees the native statement; later calls do nothing
+         */
+        void release() {
+            logger.debug("Closing prepared statement");
+            registration.release();
+            logger.trace("Prepared statement with handle {} closed", statementHandle);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.modular.database;
+
+import com.modular.database.DatabaseConnector.DatabaseException;
+import com.modular.database.DatabaseConnector.DatabaseStateException;
+import com.modular.database.DatabaseConnector.QueryResult;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Queues asynchronous statements for one connector and sends them in batches using
+ * Postgres pipeline mode, so many statements share one network round trip.
+ * A single worker thread drains the queue, which keeps results in submission order.
+ */
+class QueryPipeline implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(QueryPipeline.class);
+    // Statements sent before results are read back
+    private static final int MAX_DEPTH = 256;
+    private final DatabaseConnector connector;
+    private final LinkedBlockingQueue<Operation> queue = new LinkedBlockingQueue<>();
+    private final ReentrantLock workerLock = new ReentrantLock();
+    private Thread worker;
+    private volatile boolean closed = false;
+
+    QueryPipeline(DatabaseConnector connector) {
+        this.connector = connector;
+    }
+
+    /**
+     * Queues a query
+     * @return Future completed with the result, in submission order
+     */
+    CompletableFuture<QueryResult> submitQuery(String sql) {
+        Operation operation = new Operation(sql, new CompletableFuture<>(), null);
+        submit(operation);
+        return operation.queryFuture;
+    }
+
+    /**
+     * Queues a non-query statement
+     * @return Future completed with the number of rows affected, in submission order
+     */
+    CompletableFuture<Integer> submitUpdate(String sql) {
+        Operation operation = new Operation(sql, null, new CompletableFuture<>());
+        submit(operation);
+        return operation.updateFuture;
+    }
+
+    private void submit(Operation operation) {
+        if (closed) {
+            operation.fail(new DatabaseStateException("Connection is closed"));
+            return;
+        }
+
+        queue.add(operation);
+        ensureWorker();
+        // close() may have drained the queue before the add
+        if (closed && queue.remove(operation)) {
+            operation.fail(new DatabaseStateException("Connection is closed"));
+        }
+    }
+
+    private void ensureWorker() {
+        workerLock.lock();
+        try {
+            if (worker == null && !closed) {
+                worker = new Thread(this::run, "database-pipeline");
+                worker.setDaemon(true);
+                worker.start();
+            }
+        } finally {
+            workerLock.unlock();
+        }
+    }
+
+    private void run() {
+        List<Operation> batch = new ArrayList<>(MAX_DEPTH);
+        try {
+            while (!closed) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    break;
+                }
+                queue.drainTo(batch, MAX_DEPTH - 1);
+
+                logger.trace("Sending {} pipelined statements", batch.size());
+                connector.executePipelined(batch);
+                // Completed outside the connection lock so callbacks can use the connector
+                batch.forEach(operation -> operation.complete(connector.getHandleRegistry()));
+                batch.clear();
+            }
+        } finally {
+            workerLock.lock();
+            try {
+                worker = null;
+                // Reopened while this worker was stopping; its statements need a new one
+                if (!closed && !queue.isEmpty()) {
+                    ensureWorker();
+                }
+            } finally {
+                workerLock.unlock();
+            }
+        }
+        logger.debug("Pipeline worker stopped");
+    }
+
+    /**
+     * Accepts statements again after close(), once the connector has been connected again
+     */
+    void reopen() {
+        closed = false;
+    }
+
+    /**
+     * Stops the worker and fails every statement that has not been sent
+     */
+    @Override
+    public void close() {
+        closed = true;
+        workerLock.lock();
+        try {
+            if (worker != null) {
+                worker.interrupt();
+            }
+        } finally {
+            workerLock.unlock();
+        }
+
+        Operation pending;
+        while ((pending = queue.poll()) != null) {
+            pending.fail(new DatabaseStateException("Connection closed before the statement was sent"));
+        }
+    }
+
+    /**
+     * A queued statement. The connector fills in the outcome while holding the
+     * connection; complete() then hands it to the caller's future.
+     */
+    static final class Operation {
+        final String sql;
+        final CompletableFuture<QueryResult> queryFuture;
+        final CompletableFuture<Integer> updateFuture;
+        private int resultHandle = 0;
+        private int affectedRows = 0;
+        private DatabaseException error;
+
+        private Operation(String sql, CompletableFuture<QueryResult> queryFuture,
+                          CompletableFuture<Integer> updateFuture) {
+            this.sql = sql;
+            this.queryFuture = queryFuture;
+            this.updateFuture = updateFuture;
+        }
+
+        boolean isQuery() {
+            return queryFuture != null;
+        }
+
+        void setResultHandle(int resultHandle) {
+            this.resultHandle = resultHandle;
+        }
+
+        void setAffectedRows(int affectedRows) {
+            this.affectedRows = affectedRows;
+        }
+
+        void setError(DatabaseException error) {
+            if (this.error == null) {
+                this.error = error;
+            }
+        }
+
+        boolean hasError() {
+            return error != null;
+        }
+
+        private void fail(DatabaseException e) {
+            if (isQuery()) {
+                queryFuture.completeExceptionally(e);
+            } else {
+                updateFuture.completeExceptionally(e);
+            }
+        }
+
+        private void complete(NativeHandleRegistry handles) {
+            if (error != null) {
+                fail(error);
+            } else if (isQuery()) {
+                QueryResult result = new QueryResult(resultHandle, handles);
+                if (!queryFuture.complete(result)) {
+                    // Caller cancelled; nobody else will free the result
+                    result.close();
+                }
+            } else {
+                updateFuture.complete(affectedRows);
+            }
+        }
+    }
+}
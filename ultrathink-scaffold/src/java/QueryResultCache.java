@@ -0,0 +1,199 @@
+package com.modular.database;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Snapshots of query results keyed by normalized SQL, for one connector. The cache
+ * is bounded by the total number of cells it holds and evicts least recently used
+ * entries first. Each entry remembers the tables its query reads so writes to
+ * those tables can drop it.
+ */
+final class QueryResultCache {
+    private static final Logger logger = LoggerFactory.getLogger(QueryResultCache.class);
+    private final ReentrantLock lock = new ReentrantLock();
+    // Guarded by lock, in LRU order
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedCells = 0;
+    // Bumped by every invalidation, so a query that raced a write is not cached
+    private long generation = 0;
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+    private final AtomicLong invalidations = new AtomicLong(0);
+
+    // Configuration options
+    private volatile long maxCells = 0; // 0 disables
+    private volatile long ttlNanos = 0; // 0 keeps entries until evicted or invalidated
+
+    boolean isEnabled() {
+        return maxCells > 0;
+    }
+
+    /**
+     * @return The cached snapshot, or null if there is none or it has expired
+     */
+    ResultSnapshot get(String key) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(key);
+            if (entry != null && ttlNanos > 0 && System.nanoTime() - entry.createdNanos > ttlNanos) {
+                remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.snapshot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Current generation, read before running a query that may be cached
+     */
+    long getGeneration() {
+        lock.lock();
+        try {
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Caches a snapshot unless an invalidation has happened since the query started,
+     * in which case the snapshot may predate a write and is dropped
+     * @param generation Value of getGeneration() from before the query ran
+     */
+    void put(String key, ResultSnapshot snapshot, Set<String> tables, long generation) {
+        long cells = Math.max(1L, (long) snapshot.getRowCount() * snapshot.getColumnCount());
+        lock.lock();
+        try {
+            if (generation != this.generation || cells > maxCells) {
+                return;
+            }
+            remove(key);
+            entries.put(key, new Entry(snapshot, tables, cells));
+            cachedCells += cells;
+            evict(maxCells);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops every entry that reads one of the given tables
+     * @param tables Tables that were written; empty means unknown, which drops everything
+     */
+    void invalidate(Set<String> tables) {
+        lock.lock();
+        try {
+            generation++;
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next().getValue();
+                if (tables.isEmpty() || !Collections.disjoint(entry.tables, tables)) {
+                    iterator.remove();
+                    cachedCells -= entry.cells;
+                    invalidations.incrementAndGet();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        logger.trace("Invalidated cached results reading {}", tables.isEmpty() ? "any table" : tables);
+    }
+
+    /**
+     * Drops every entry
+     */
+    void clear() {
+        invalidate(Collections.emptySet());
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            cachedCells -= removed.cells;
+        }
+    }
+
+    /**
+     * Drops least recently used entries until at most maxCells remain. Caller must hold lock.
+     */
+    private void evict(long maxCells) {
+        Iterator<Entry> leastRecentFirst = entries.values().iterator();
+        while (cachedCells > maxCells && leastRecentFirst.hasNext()) {
+            Entry evicted = leastRecentFirst.next();
+            leastRecentFirst.remove();
+            cachedCells -= evicted.cells;
+            evictions.incrementAndGet();
+        }
+    }
+
+    void setMaxCells(long maxCells) {
+        lock.lock();
+        try {
+            this.maxCells = Math.max(0, maxCells);
+            evict(this.maxCells);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void setTtlNanos(long ttlNanos) {
+        this.ttlNanos = Math.max(0, ttlNanos);
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    long getEvictions() {
+        return evictions.get();
+    }
+
+    long getInvalidations() {
+        return invalidations.get();
+    }
+
+    /**
+     * Cached snapshot with the tables its query reads
+     */
+    private static final class Entry {
+        final ResultSnapshot snapshot;
+        final Set<String> tables;
+        final long cells;
+        final long createdNanos = System.nanoTime();
+
+        Entry(ResultSnapshot snapshot, Set<String> tables, long cells) {
+            this.snapshot = snapshot;
+            this.tables = tables;
+            this.cells = cells;
+        }
+    }
+}
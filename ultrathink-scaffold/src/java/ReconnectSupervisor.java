@@ -0,0 +1,159 @@
+package com.modular.database;
+
+import com.modular.database.DatabaseConnector.CircuitState;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Re-establishes a lost connection on a background thread so callers never wait
+ * on a reconnect. Acts as a circuit breaker for its connector: while the circuit
+ * is open, calls fail immediately; after a jittered exponential backoff one trial
+ * connection is made (half-open), which either closes the circuit or reopens it
+ * with a longer delay.
+ */
+class ReconnectSupervisor implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ReconnectSupervisor.class);
+    private final DatabaseConnector connector;
+    private final ReentrantLock workerLock = new ReentrantLock();
+    private Thread worker;
+    private volatile CircuitState state = CircuitState.CLOSED;
+    private volatile boolean closed = false;
+
+    // Configuration options
+    private volatile long initialBackoffMillis = 100;
+    private volatile long maxBackoffMillis = 30_000;
+
+    ReconnectSupervisor(DatabaseConnector connector) {
+        this.connector = connector;
+    }
+
+    /**
+     * Opens the circuit and starts reconnecting in the background
+     */
+    void connectionLost() {
+        if (closed) {
+            return;
+        }
+
+        workerLock.lock();
+        try {
+            state = CircuitState.OPEN;
+            if (worker == null) {
+                worker = new Thread(this::run, "database-reconnect");
+                worker.setDaemon(true);
+                worker.start();
+            }
+        } finally {
+            workerLock.unlock();
+        }
+    }
+
+    /**
+     * Closes the circuit after the connector connected by other means
+     */
+    void connectionRestored() {
+        state = CircuitState.CLOSED;
+    }
+
+    /**
+     * @return Whether calls should fail fast because a reconnect is in progress
+     */
+    boolean isReconnecting() {
+        return state != CircuitState.CLOSED;
+    }
+
+    CircuitState getState() {
+        return state;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Re-arms a closed supervisor with a closed circuit, for a connector that is
+     * being connected again after close(). Does nothing if it was never closed.
+     */
+    void reset() {
+        if (closed) {
+            state = CircuitState.CLOSED;
+            closed = false;
+        }
+    }
+
+    void setBackoff(long initialBackoffMillis, long maxBackoffMillis) {
+        if (initialBackoffMillis <= 0 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("Backoff must be positive and the maximum at least the initial delay");
+        }
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Delay before the given retry: the exponential step for the attempt capped at
+     * the maximum, with the upper half randomized so that many clients losing the
+     * same server do not all come back at the same moment
+     * @param attempt Retry number, starting at 1
+     */
+    long backoffMillis(int attempt) {
+        long initial = initialBackoffMillis;
+        // Stop doubling before the step would overflow, however many attempts failed
+        int shift = Math.min(Math.max(attempt - 1, 0), Long.numberOfLeadingZeros(initial) - 1);
+        long ceiling = Math.min(initial << shift, maxBackoffMillis);
+        long half = ceiling / 2;
+        return half + ThreadLocalRandom.current().nextLong(ceiling - half + 1);
+    }
+
+    private void run() {
+        int attempt = 0;
+        try {
+            while (!closed && state != CircuitState.CLOSED) {
+                attempt++;
+                Thread.sleep(backoffMillis(attempt));
+                if (closed || state == CircuitState.CLOSED) {
+                    break;
+                }
+
+                state = CircuitState.HALF_OPEN;
+                if (connector.reopen()) {
+                    state = CircuitState.CLOSED;
+                    logger.info("Reconnected to database after {} attempts", attempt);
+                } else {
+                    state = CircuitState.OPEN;
+                    logger.warn("Reconnect attempt {} failed", attempt);
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.debug("Reconnect supervisor interrupted");
+        } finally {
+            workerLock.lock();
+            try {
+                worker = null;
+                // The connection may have been lost again while this thread was finishing
+                if (!closed && state != CircuitState.CLOSED) {
+                    connectionLost();
+                }
+            } finally {
+                workerLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Stops reconnecting; the connector is being closed
+     */
+    @Override
+    public void close() {
+        closed = true;
+        workerLock.lock();
+        try {
+            if (worker != null) {
+                worker.interrupt();
+            }
+        } finally {
+            workerLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.modular.database;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable copy of a query result held entirely on the Java heap.
+ * Values are stored column by column as int codes into a string dictionary
+ * shared by all columns, so repeated values are kept once. Reads take no locks
+ * and any number of threads can use a snapshot at the same time.
+ */
+public final class ResultSnapshot {
+    private static final int NULL_CODE = -1;
+    private final String[] columnNames;
+    private final Map<String, Integer> columnIndex;
+    private final int rowCount;
+    // Column-major: the code of (row, column) is at column * rowCount + row
+    private final int[] cells;
+    private final String[] dictionary;
+
+    private ResultSnapshot(String[] columnNames, int rowCount, int[] cells, String[] dictionary) {
+        this.columnNames = columnNames;
+        this.rowCount = rowCount;
+        this.cells = cells;
+        this.dictionary = dictionary;
+        Map<String, Integer> index = new HashMap<>();
+        for (int j = columnNames.length - 1; j >= 0; j--) {
+            // First column wins when names repeat
+            index.put(columnNames[j], j);
+        }
+        this.columnIndex = Collections.unmodifiableMap(index);
+    }
+
+    /**
+     * @return Number of rows
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return Number of columns
+     */
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    /**
+     * @return Copy of the column names in result order
+     */
+    public String[] getColumnNames() {
+        return columnNames.clone();
+    }
+
+    /**
+     * @return Index of the named column, or -1 if there is none
+     */
+    public int getColumnIndex(String columnName) {
+        return columnIndex.getOrDefault(columnName, -1);
+    }
+
+    /**
+     * @return The value, or null for SQL NULL
+     * @throws IndexOutOfBoundsException if row or column is out of range
+     */
+    public String getValue(int row, int column) {
+        int code = cells[cellIndex(row, column)];
+        return code == NULL_CODE ? null : dictionary[code];
+    }
+
+    /**
+     * @return The value in the named column, or null for SQL NULL
+     * @throws IllegalArgumentException if there is no such column
+     */
+    public String getValue(int row, String columnName) {
+        int column = getColumnIndex(columnName);
+        if (column < 0) {
+            throw new IllegalArgumentException("No column named " + columnName);
+        }
+        return getValue(row, column);
+    }
+
+    /**
+     * @return Whether the value is SQL NULL
+     */
+    public boolean isNull(int row, int column) {
+        return cells[cellIndex(row, column)] == NULL_CODE;
+    }
+
+    /**
+     * @return Read-only view of one column, decoded as it is read
+     */
+    public List<String> getColumnValues(int column) {
+        Objects.checkIndex(column, columnNames.length);
+        int offset = column * rowCount;
+        return new AbstractList<String>() {
+            @Override
+            public String get(int row) {
+                int code = cells[offset + Objects.checkIndex(row, rowCount)];
+                return code == NULL_CODE ? null : dictionary[code];
+            }
+
+            @Override
+            public int size() {
+                return rowCount;
+            }
+        };
+    }
+
+    /**
+     * @return Number of distinct non-null values across all columns
+     */
+    public int getDistinctValueCount() {
+        return dictionary.length;
+    }
+
+    private int cellIndex(int row, int column) {
+        Objects.checkIndex(row, rowCount);
+        Objects.checkIndex(column, columnNames.length);
+        return column * rowCount + row;
+    }
+
+    /**
+     * Collects rows in result order and encodes them into a snapshot
+     */
+    static final class Builder {
+        private final String[] columnNames;
+        private final int rowCount;
+        private final int[] cells;
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+        private int rowsAdded = 0;
+
+        Builder(String[] columnNames, int rowCount) {
+            this.columnNames = columnNames.clone();
+            this.rowCount = rowCount;
+            this.cells = new int[Math.multiplyExact(rowCount, columnNames.length)];
+        }
+
+        void addRow(String[] values) {
+            for (int j = 0; j < columnNames.length; j++) {
+                cells[j * rowCount + rowsAdded] = encode(values[j]);
+            }
+            rowsAdded++;
+        }
+
+        private int encode(String value) {
+            if (value == null) {
+                return NULL_CODE;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                codes.put(value, code);
+                dictionary.add(value);
+            }
+            return code;
+        }
+
+        ResultSnapshot build() {
+            if (rowsAdded != rowCount) {
+                throw new IllegalStateException("Expected " + rowCount + " rows but got " + rowsAdded);
+            }
+            return new ResultSnapshot(columnNames, rowCount, cells, dictionary.toArray(new String[0]));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ResultSnapshot" + Arrays.toString(columnNames) + " with " + rowCount + " rows";
+    }
+}
@@ -0,0 +1,366 @@
+/**
+ * Java Routing Database Connector
+ * Splits reads and writes between a primary and its read replicas
+ */
+package com.modular.database;
+
+import com.modular.database.DatabaseConnector.DatabaseConnectionException;
+import com.modular.database.DatabaseConnector.DatabaseException;
+import com.modular.database.DatabaseConnector.DatabaseQueryException;
+import com.modular.database.DatabaseConnector.QueryResult;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Connector that sends writes to a primary and spreads query() reads over read
+ * replicas, picking the least loaded replica relative to its weight. Replicas
+ * that lag behind the primary by more than the configured bound, or that fail,
+ * are skipped until they recover; with no usable replica, reads go to the primary.
+ * A query() that is not a plain read, such as INSERT ... RETURNING,
+ * SELECT ... FOR UPDATE or a SELECT calling nextval(), goes to the primary too,
+ * as does a read the replica rejects because it tried to write.
+ *
+ * Calls on the connector itself are routed one by one. For read-your-writes,
+ * use a Session: once a session writes, all of its later reads go to the primary.
+ */
+public class RoutingDatabaseConnector implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(RoutingDatabaseConnector.class);
+    // Replication lag in milliseconds. A replica that is streaming and has replayed all
+    // the WAL it received is caught up: the age of its last replayed transaction only
+    // shows how long the primary has been idle. Cast to float8 because EXTRACT
+    // returns numeric from Postgres 14 on.
+    private static final String REPLICATION_LAG_QUERY =
+            "SELECT (CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn()"
+            + " AND EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') THEN 0"
+            + " ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END)::float8";
+    // SQLSTATE read_only_sql_transaction: a write attempted on a standby
+    private static final String READ_ONLY_SQL_TRANSACTION = "25006";
+    private final DatabaseConnector primary;
+    private final List<Replica> replicas = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean connected = new AtomicBoolean(false);
+    private final AtomicLong primaryReads = new AtomicLong(0);
+    private final AtomicLong replicaReads = new AtomicLong(0);
+    private final ScheduledExecutorService lagMonitor;
+
+    // Configuration options
+    private volatile Duration maxReplicationLag = Duration.ZERO; // no bound
+    private volatile Duration lagCheckInterval = Duration.ofSeconds(5);
+
+    /**
+     * Creates a routing connector
+     * @param primaryConnectionString Connection string of the primary, which takes all writes
+     */
+    public RoutingDatabaseConnector(String primaryConnectionString) {
+        this.primary = new DatabaseConnector(primaryConnectionString);
+        this.lagMonitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "database-replica-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Adds a read replica. Must be called before connect().
+     * @param connectionString Connection string of the replica
+     * @param weight Relative share of reads; a weight 2 replica takes twice the load of weight 1
+     */
+    public void addReplica(String connectionString, int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Replica weight must be at least 1");
+        }
+        if (connected.get()) {
+            throw new IllegalStateException("Replicas must be added before connect()");
+        }
+        replicas.add(new Replica(new DatabaseConnector(connectionString), weight));
+    }
+
+    /**
+     * Connects to the primary and every replica. A replica that cannot be reached
+     * is left out of rotation until the lag monitor reconnects it.
+     * @throws DatabaseConnectionException if the primary cannot be reached
+     */
+    public void connect() throws DatabaseConnectionException {
+        if (!connected.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            primary.connect();
+        } catch (DatabaseConnectionException | RuntimeException e) {
+            // Allow a later connect() to try again
+            connected.set(false);
+            throw e;
+        }
+        for (Replica replica : replicas) {
+            try {
+                replica.connector.connect();
+                replica.available = true;
+            } catch (DatabaseConnectionException e) {
+                logger.warn("Replica unavailable, reads will skip it: {}", e.getMessage());
+            }
+        }
+
+        if (!replicas.isEmpty()) {
+            long interval = lagCheckInterval.toMillis();
+            lagMonitor.scheduleWithFixedDelay(this::checkReplicas, 0, interval, TimeUnit.MILLISECONDS);
+        }
+        logger.info("Routing connector ready with {} replicas", replicas.size());
+    }
+
+    /**
+     * Runs a read-only query on a replica, or on the primary if no replica is usable.
+     * Statements that may write, or that cannot be parsed, always run on the primary.
+     * @see DatabaseConnector#query(String)
+     */
+    public QueryResult query(String sql) throws DatabaseException {
+        return isReadOnly(sql) ? queryReplica(sql, null) : queryPrimary(sql);
+    }
+
+    /**
+     * @param session Session to pin to the primary if the replica finds the query
+     *                writes, or null
+     */
+    private QueryResult queryReplica(String sql, Session session) throws DatabaseException {
+        Replica replica = selectReplica();
+        if (replica == null) {
+            return queryPrimary(sql);
+        }
+
+        replica.inFlight.incrementAndGet();
+        try {
+            QueryResult result = replica.connector.query(sql);
+            replicaReads.incrementAndGet();
+            return result;
+        } catch (DatabaseConnectionException e) {
+            // Take it out of rotation; the lag monitor brings it back
+            replica.available = false;
+            logger.warn("Replica read failed, retrying on primary: {}", e.getMessage());
+            return queryPrimary(sql);
+        } catch (DatabaseQueryException e) {
+            if (!READ_ONLY_SQL_TRANSACTION.equals(e.getSqlState())) {
+                throw e;
+            }
+            // The query writes in a way the lexer cannot see, e.g. through an operator
+            // or view; the replica stays in rotation
+            logger.debug("Replica rejected a query that writes, retrying on primary: {}", e.getMessage());
+            if (session != null) {
+                session.pinnedToPrimary = true;
+            }
+            return queryPrimary(sql);
+        } finally {
+            replica.inFlight.decrementAndGet();
+        }
+    }
+
+    private QueryResult queryPrimary(String sql) throws DatabaseException {
+        primaryReads.incrementAndGet();
+        return primary.query(sql);
+    }
+
+    /**
+     * @return Whether the statement is a plain read that a replica can serve; false
+     *         for anything the lexer cannot tokenize
+     */
+    private static boolean isReadOnly(String sql) {
+        try {
+            return SqlLexer.isReadOnly(SqlLexer.tokenize(sql));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Runs a statement on the primary
+     * @see DatabaseConnector#execute(String)
+     */
+    public int execute(String sql) throws DatabaseException {
+        return primary.execute(sql);
+    }
+
+    /**
+     * Runs a batch on the primary
+     * @see DatabaseConnector#executeBatch(List)
+     */
+    public int executeBatch(List<String> statements) throws DatabaseException {
+        return primary.executeBatch(statements);
+    }
+
+    /**
+     * Opens a session that reads from replicas until its first write and from the
+     * primary afterwards, so it always sees its own writes
+     */
+    public Session openSession() {
+        return new Session();
+    }
+
+    /**
+     * @return The primary connector, for operations that are not routed
+     */
+    public DatabaseConnector getPrimary() {
+        return primary;
+    }
+
+    /**
+     * @return Number of query() calls served by the primary, including those that
+     *         were not plain reads
+     */
+    public long getPrimaryReadCount() {
+        return primaryReads.get();
+    }
+
+    /**
+     * @return Number of reads served by replicas
+     */
+    public long getReplicaReadCount() {
+        return replicaReads.get();
+    }
+
+    /**
+     * Lag is the age of the last transaction a replica replayed, or zero once a streaming
+     * replica has replayed everything it received, so an idle primary does not make
+     * caught-up replicas look stale.
+     * @param maxReplicationLag Replicas further behind than this get no reads; zero disables the bound
+     */
+    public void setMaxReplicationLag(Duration maxReplicationLag) {
+        this.maxReplicationLag = maxReplicationLag;
+    }
+
+    /**
+     * @param lagCheckInterval How often replica lag and health are checked; takes effect on connect()
+     */
+    public void setLagCheckInterval(Duration lagCheckInterval) {
+        this.lagCheckInterval = lagCheckInterval;
+    }
+
+    /**
+     * Picks the usable replica with the fewest in-flight reads per unit of weight
+     * @return The replica, or null if none is usable
+     */
+    private Replica selectReplica() {
+        long lagBound = maxReplicationLag.toMillis();
+        Replica best = null;
+        double bestLoad = Double.MAX_VALUE;
+        for (Replica replica : replicas) {
+            if (!replica.available || (lagBound > 0 && replica.lagMillis > lagBound)) {
+                continue;
+            }
+            double load = (replica.inFlight.get() + 1) / (double) replica.weight;
+            if (load < bestLoad) {
+                best = replica;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Periodic task: measures how far each replica has fallen behind and brings
+     * failed replicas back into rotation once they answer again
+     */
+    private void checkReplicas() {
+        for (Replica replica : replicas) {
+            try {
+                replica.connector.connect();
+                try (QueryResult lag = replica.connector.query(REPLICATION_LAG_QUERY)) {
+                    replica.lagMillis = (long) lag.getDouble(0, 0);
+                }
+                if (!replica.available) {
+                    logger.info("Replica back in rotation");
+                }
+                replica.available = true;
+            } catch (DatabaseException | RuntimeException e) {
+                if (replica.available) {
+                    logger.warn("Replica health check failed, removing it from rotation: {}", e.getMessage());
+                }
+                replica.available = false;
+            }
+        }
+    }
+
+    /**
+     * Closes the primary and every replica
+     */
+    @Override
+    public void close() {
+        lagMonitor.shutdownNow();
+        for (Replica replica : replicas) {
+            replica.connector.close();
+        }
+        primary.close();
+        connected.set(false);
+    }
+
+    /**
+     * Replica connection with its routing state
+     */
+    private static final class Replica {
+        final DatabaseConnector connector;
+        final int weight;
+        final AtomicInteger inFlight = new AtomicInteger(0);
+        volatile boolean available = false;
+        volatile long lagMillis = 0;
+
+        Replica(DatabaseConnector connector, int weight) {
+            this.connector = connector;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Sequence of calls with read-your-writes consistency
+     */
+    public final class Session {
+        private volatile boolean pinnedToPrimary = false;
+
+        private Session() {
+        }
+
+        /**
+         * Reads from a replica, or from the primary once this session has written.
+         * A statement that is not a plain read counts as a write: it runs on the
+         * primary and pins the session to it.
+         */
+        public QueryResult query(String sql) throws DatabaseException {
+            if (pinnedToPrimary) {
+                return queryPrimary(sql);
+            }
+            if (!isReadOnly(sql)) {
+                pinnedToPrimary = true;
+                return queryPrimary(sql);
+            }
+            return queryReplica(sql, this);
+        }
+
+        /**
+         * Writes to the primary and pins this session's later reads to it
+         */
+        public int execute(String sql) throws DatabaseException {
+            pinnedToPrimary = true;
+            return primary.execute(sql);
+        }
+
+        /**
+         * Writes a batch to the primary and pins this session's later reads to it
+         */
+        public int executeBatch(List<String> statements) throws DatabaseException {
+            pinnedToPrimary = true;
+            return primary.executeBatch(statements);
+        }
+
+        /**
+         * @return Whether this session's reads now go to the primary
+         */
+        public boolean isPinnedToPrimary() {
+            return pinnedToPrimary;
+        }
+    }
+}
@@ -0,0 +1,577 @@
+package com.modular.database;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Minimal Postgres SQL tokenizer. Understands enough of the lexical grammar to
+ * skip comments and quoted text correctly, which is what normalizing statements
+ * and finding the tables they touch need; it does not parse.
+ */
+final class SqlLexer {
+    // Keywords followed by a table name
+    private static final Set<String> TABLE_KEYWORDS = Set.of("from", "join", "into", "update", "table", "truncate", "copy");
+    // Keywords that can follow a table name in a FROM list, so are never aliases
+    private static final Set<String> CLAUSE_KEYWORDS = Set.of(
+            "where", "join", "inner", "left", "right", "full", "cross", "natural", "on", "using",
+            "group", "order", "limit", "offset", "union", "except", "intersect", "having", "window",
+            "for", "fetch", "returning", "set", "values", "select", "default", "do", "from", "to",
+            "with", "lateral", "tablesample");
+    // Statements whose literals may be replaced by parameters; utility statements take none
+    private static final Set<String> PARAMETERIZABLE_STATEMENTS = Set.of("select", "insert", "update", "delete", "with", "values");
+    // Type names that form typed literals such as DATE '2024-01-01', where a parameter is not allowed
+    private static final Set<String> TYPED_LITERAL_PREFIXES = Set.of(
+            "date", "time", "timestamp", "timestamptz", "interval", "int", "integer", "bigint", "smallint",
+            "numeric", "decimal", "real", "float", "precision", "text", "varchar", "char", "boolean", "bool",
+            "json", "jsonb", "uuid", "bytea", "inet", "cidr", "money");
+    // Keywords that end an ORDER BY or GROUP BY list, where integers are column positions
+    private static final Set<String> ORDERING_END_KEYWORDS = Set.of(
+            "limit", "offset", "having", "window", "union", "except", "intersect", "fetch", "for", "returning");
+    // Keywords that end a SELECT list, where literals name and type result columns
+    private static final Set<String> SELECT_LIST_END_KEYWORDS = Set.of(
+            "from", "into", "where", "group", "having", "window", "order", "limit", "offset", "union",
+            "except", "intersect", "fetch", "for");
+    // Keywords that can stand before '(' without it being a function call
+    private static final Set<String> PAREN_KEYWORDS = Set.of(
+            "select", "from", "join", "lateral", "on", "using", "where", "and", "or", "not", "in", "exists",
+            "any", "all", "some", "as", "values", "over", "filter", "group", "by", "having", "when", "then",
+            "else", "case", "between", "like", "ilike", "is", "union", "except", "intersect", "distinct",
+            "limit", "offset", "row", "array", "with", "recursive", "partition", "order", "set");
+    // Built-in functions that never write or take locks, so a read calling only these
+    // can run on a replica. Any other function, such as nextval(), setval(),
+    // pg_advisory_lock() or a user-defined one, may write.
+    private static final Set<String> READ_ONLY_FUNCTIONS = Set.of(
+            // Aggregates and window functions
+            "count", "sum", "avg", "min", "max", "bool_and", "bool_or", "every", "array_agg", "string_agg",
+            "json_agg", "jsonb_agg", "json_object_agg", "jsonb_object_agg", "stddev", "variance",
+            "row_number", "rank", "dense_rank", "percent_rank", "cume_dist", "ntile", "lag", "lead",
+            "first_value", "last_value", "nth_value", "percentile_cont", "percentile_disc", "mode",
+            // Conditionals and conversions
+            "coalesce", "nullif", "greatest", "least", "cast",
+            // Strings
+            "lower", "upper", "initcap", "length", "char_length", "octet_length", "substring", "substr",
+            "trim", "btrim", "ltrim", "rtrim", "lpad", "rpad", "concat", "concat_ws", "replace", "position",
+            "strpos", "left", "right", "split_part", "format", "repeat", "reverse", "starts_with",
+            "regexp_replace", "regexp_match", "regexp_matches", "md5", "encode", "decode", "quote_ident",
+            "quote_literal",
+            // Numbers
+            "abs", "round", "ceil", "ceiling", "floor", "trunc", "mod", "power", "sqrt", "sign", "random",
+            // Dates and times
+            "now", "date_trunc", "date_part", "extract", "age", "to_char", "to_date", "to_timestamp",
+            "to_number", "make_date", "make_interval", "clock_timestamp", "statement_timestamp",
+            // Arrays, JSON and sets
+            "array_length", "cardinality", "array_position", "array_to_string", "string_to_array", "unnest",
+            "generate_series", "to_json", "to_jsonb", "json_build_object", "jsonb_build_object",
+            "json_build_array", "jsonb_build_array", "jsonb_array_length", "jsonb_extract_path_text",
+            "jsonb_typeof", "jsonb_set", "jsonb_strip_nulls",
+            // Session information
+            "current_setting", "version", "pg_is_in_recovery", "pg_typeof");
+
+    enum TokenType {
+        WORD,
+        QUOTED_IDENTIFIER,
+        STRING,
+        NUMBER,
+        PARAMETER,
+        SYMBOL
+    }
+
+    /**
+     * A token and where it sits in the statement text
+     */
+    static final class Token {
+        final TokenType type;
+        final String text;
+        final int start;
+        final int end;
+
+        private Token(TokenType type, String text, int start, int end) {
+            this.type = type;
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+
+        boolean isWord(String word) {
+            return type == TokenType.WORD && text.equalsIgnoreCase(word);
+        }
+
+        boolean isSymbol(String symbol) {
+            return type == TokenType.SYMBOL && text.equals(symbol);
+        }
+
+        @Override
+        public String toString() {
+            return type + "(" + text + ")";
+        }
+    }
+
+    /**
+     * SELECT whose select list may still be open, at the paren depth it started at
+     */
+    private static final class SelectScope {
+        final int depth;
+        boolean inList = true;
+
+        SelectScope(int depth) {
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * Statement text with its literals replaced by numbered parameters
+     */
+    static final class Parameterized {
+        final String sql;
+        final List<String> parameters;
+
+        private Parameterized(String sql, List<String> parameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+    }
+
+    private SqlLexer() {
+    }
+
+    /**
+     * Splits a statement into tokens, dropping whitespace and comments
+     * @throws IllegalArgumentException if a quoted string or comment is not terminated
+     */
+    static List<Token> tokenize(String sql) {
+        List<Token> tokens = new ArrayList<>();
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            int start = i;
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                while (i < length && sql.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                i = skipBlockComment(sql, i);
+            } else if (c == '\'') {
+                i = skipQuoted(sql, i, '\'', false);
+                tokens.add(new Token(TokenType.STRING, sql.substring(start, i), start, i));
+            } else if ((c == 'E' || c == 'e') && i + 1 < length && sql.charAt(i + 1) == '\'') {
+                i = skipQuoted(sql, i + 1, '\'', true);
+                tokens.add(new Token(TokenType.STRING, sql.substring(start, i), start, i));
+            } else if (c == '"') {
+                i = skipQuoted(sql, i, '"', false);
+                tokens.add(new Token(TokenType.QUOTED_IDENTIFIER, sql.substring(start, i), start, i));
+            } else if (c == '$' && i + 1 < length && Character.isDigit(sql.charAt(i + 1))) {
+                i++;
+                while (i < length && Character.isDigit(sql.charAt(i))) {
+                    i++;
+                }
+                tokens.add(new Token(TokenType.PARAMETER, sql.substring(start, i), start, i));
+            } else if (c == '$' && dollarTagEnd(sql, i) > 0) {
+                int tagEnd = dollarTagEnd(sql, i);
+                String tag = sql.substring(i, tagEnd);
+                int close = sql.indexOf(tag, tagEnd);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Unterminated dollar-quoted string at offset " + start);
+                }
+                i = close + tag.length();
+                tokens.add(new Token(TokenType.STRING, sql.substring(start, i), start, i));
+            } else if (Character.isDigit(c) || (c == '.' && i + 1 < length && Character.isDigit(sql.charAt(i + 1)))) {
+                i = skipNumber(sql, i);
+                tokens.add(new Token(TokenType.NUMBER, sql.substring(start, i), start, i));
+            } else if (Character.isLetter(c) || c == '_') {
+                while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_'
+                        || sql.charAt(i) == '$')) {
+                    i++;
+                }
+                tokens.add(new Token(TokenType.WORD, sql.substring(start, i), start, i));
+            } else if (isOperatorChar(c)) {
+                while (i < length && isOperatorChar(sql.charAt(i))
+                        && !sql.startsWith("--", i) && !sql.startsWith("/*", i)) {
+                    i++;
+                }
+                tokens.add(new Token(TokenType.SYMBOL, sql.substring(start, i), start, i));
+            } else {
+                i++;
+                tokens.add(new Token(TokenType.SYMBOL, String.valueOf(c), start, i));
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Canonical text for a statement: comments and trailing semicolons dropped,
+     * tokens separated by single spaces and unquoted words lower-cased. Statements
+     * that differ only in layout or keyword case normalize to the same text.
+     */
+    static String normalize(List<Token> tokens) {
+        int end = tokens.size();
+        while (end > 0 && tokens.get(end - 1).isSymbol(";")) {
+            end--;
+        }
+
+        StringBuilder normalized = new StringBuilder();
+        for (int i = 0; i < end; i++) {
+            Token token = tokens.get(i);
+            if (i > 0) {
+                normalized.append(' ');
+            }
+            normalized.append(token.type == TokenType.WORD ? token.text.toLowerCase(Locale.ROOT) : token.text);
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Replaces the string and numeric literals of a DML statement with $n parameters,
+     * so statements that differ only in their literals share one server-side plan.
+     * Numbers get a cast to the type Postgres gives the literal; strings stay untyped,
+     * as a quoted literal is. Literals that cannot become parameters stay inline:
+     * prefixed strings (E'', B''), typed literals (DATE '...'), every number in an
+     * ORDER BY or GROUP BY list, where integers are column positions, and type
+     * modifiers such as varchar(20). So do literals in a select list, where a
+     * parameter would change the result column's name or type, and strings passed
+     * straight to a function, whose type the server often cannot infer.
+     * @return The parameterized statement, or null if it has no literals to replace,
+     *         already uses parameters, or is not a SELECT, INSERT, UPDATE, DELETE,
+     *         WITH or VALUES statement
+     */
+    static Parameterized parameterize(String sql, List<Token> tokens) {
+        if (tokens.isEmpty() || tokens.get(0).type != TokenType.WORD
+                || !PARAMETERIZABLE_STATEMENTS.contains(tokens.get(0).text.toLowerCase(Locale.ROOT))) {
+            return null;
+        }
+
+        StringBuilder shape = new StringBuilder(sql.length());
+        List<String> parameters = new ArrayList<>();
+        int copied = 0;
+        // Paren depth at which each open ORDER BY or GROUP BY list started, innermost first
+        Deque<Integer> orderingDepths = new ArrayDeque<>();
+        // Enclosing SELECTs, innermost first, and whether each open paren is a call
+        Deque<SelectScope> selects = new ArrayDeque<>();
+        Deque<Boolean> callParens = new ArrayDeque<>();
+        int depth = 0;
+        boolean inTypeModifier = false;
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            Token previous = i > 0 ? tokens.get(i - 1) : null;
+            if (token.type == TokenType.PARAMETER) {
+                return null;
+            }
+
+            if (token.isSymbol("(")) {
+                depth++;
+                callParens.push(i > 0 && isFunctionCall(tokens, i - 1));
+            } else if (token.isSymbol(")")) {
+                depth--;
+                callParens.poll();
+                // Closing the parentheses a list was opened in ends it
+                while (!orderingDepths.isEmpty() && orderingDepths.peek() > depth) {
+                    orderingDepths.pop();
+                }
+                while (!selects.isEmpty() && selects.peek().depth > depth) {
+                    selects.pop();
+                }
+            } else if (token.isWord("select")) {
+                selects.push(new SelectScope(depth));
+            } else if (token.isWord("by") && previous != null && (previous.isWord("order") || previous.isWord("group"))) {
+                orderingDepths.push(depth);
+            } else if (token.isSymbol(";") || (token.type == TokenType.WORD
+                    && ORDERING_END_KEYWORDS.contains(token.text.toLowerCase(Locale.ROOT)))) {
+                // A clause keyword only ends a list opened at the same depth
+                while (!orderingDepths.isEmpty() && orderingDepths.peek() >= depth) {
+                    orderingDepths.pop();
+                }
+            }
+            if ((token.isSymbol(";") || (token.type == TokenType.WORD
+                    && SELECT_LIST_END_KEYWORDS.contains(token.text.toLowerCase(Locale.ROOT))))
+                    && !selects.isEmpty() && selects.peek().depth == depth) {
+                selects.peek().inList = false;
+            }
+            if (token.isSymbol("(") && i >= 2 && previous.type == TokenType.WORD
+                    && (tokens.get(i - 2).isSymbol("::") || tokens.get(i - 2).isWord("as"))) {
+                inTypeModifier = true;
+            } else if (inTypeModifier && token.isSymbol(")")) {
+                inTypeModifier = false;
+            }
+
+            if (!selects.isEmpty() && selects.peek().inList) {
+                continue;
+            }
+            String value;
+            String cast;
+            if (token.type == TokenType.STRING && isPlainString(token, previous)
+                    && !Boolean.TRUE.equals(callParens.peek())) {
+                value = stringValue(token.text);
+                cast = "";
+            } else if (token.type == TokenType.NUMBER && orderingDepths.isEmpty() && !inTypeModifier) {
+                value = token.text;
+                cast = numericCast(token.text);
+            } else {
+                continue;
+            }
+            parameters.add(value);
+            shape.append(sql, copied, token.start).append('$').append(parameters.size()).append(cast);
+            copied = token.end;
+        }
+
+        if (parameters.isEmpty()) {
+            return null;
+        }
+        shape.append(sql, copied, sql.length());
+        return new Parameterized(shape.toString(), parameters);
+    }
+
+    private static boolean isPlainString(Token token, Token previous) {
+        char first = token.text.charAt(0);
+        if (first != '\'' && first != '$') {
+            return false;
+        }
+        if (previous == null || previous.type != TokenType.WORD) {
+            return true;
+        }
+        // A word right against the quote is a prefix such as B'' or X''
+        return previous.end != token.start
+                && !TYPED_LITERAL_PREFIXES.contains(previous.text.toLowerCase(Locale.ROOT));
+    }
+
+    private static String stringValue(String literal) {
+        if (literal.charAt(0) == '$') {
+            int tagEnd = literal.indexOf('$', 1) + 1;
+            return literal.substring(tagEnd, literal.length() - tagEnd);
+        }
+        return literal.substring(1, literal.length() - 1).replace("''", "'");
+    }
+
+    /**
+     * @return Cast giving a parameter the type Postgres infers for the numeric literal
+     */
+    private static String numericCast(String literal) {
+        if (literal.indexOf('.') >= 0 || literal.indexOf('e') >= 0 || literal.indexOf('E') >= 0) {
+            return "::numeric";
+        }
+        try {
+            long value = Long.parseLong(literal);
+            return value <= Integer.MAX_VALUE ? "::int4" : "::int8";
+        } catch (NumberFormatException e) {
+            return "::numeric";
+        }
+    }
+
+    /**
+     * Whether the statement is a plain read that cannot change table contents. A
+     * function can write, so a read that calls anything outside a list of built-in
+     * read-only functions does not count. Writes hidden behind operators, views or
+     * rules are not seen.
+     * @return Whether the statement is a plain read
+     */
+    static boolean isReadOnly(List<Token> tokens) {
+        if (tokens.isEmpty() || !(tokens.get(0).isWord("select") || tokens.get(0).isWord("values")
+                || tokens.get(0).isWord("show"))) {
+            return false;
+        }
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            // SELECT ... INTO creates a table; FOR UPDATE and friends take row locks
+            if (token.isWord("into") || token.isWord("for")) {
+                return false;
+            }
+            if (isFunctionCall(tokens, i) && !isReadOnlyFunction(tokens, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Whether the token at index names a function that is called, rather than
+     *         a keyword or a type with modifiers such as varchar(20)
+     */
+    private static boolean isFunctionCall(List<Token> tokens, int index) {
+        Token token = tokens.get(index);
+        if (index + 1 >= tokens.size() || !tokens.get(index + 1).isSymbol("(")) {
+            return false;
+        }
+        if (token.type == TokenType.WORD && PAREN_KEYWORDS.contains(token.text.toLowerCase(Locale.ROOT))) {
+            return false;
+        }
+        if (token.type != TokenType.WORD && token.type != TokenType.QUOTED_IDENTIFIER) {
+            return false;
+        }
+        Token previous = index > 0 ? tokens.get(index - 1) : null;
+        return previous == null || !(previous.isSymbol("::") || previous.isWord("as"));
+    }
+
+    /**
+     * @return Whether the called function is a known read-only built-in; a schema
+     *         other than pg_catalog may hold a function of the same name that writes
+     */
+    private static boolean isReadOnlyFunction(List<Token> tokens, int index) {
+        Token token = tokens.get(index);
+        if (token.type != TokenType.WORD || !READ_ONLY_FUNCTIONS.contains(token.text.toLowerCase(Locale.ROOT))) {
+            return false;
+        }
+        if (index >= 2 && tokens.get(index - 1).isSymbol(".")) {
+            return tokens.get(index - 2).isWord("pg_catalog");
+        }
+        return true;
+    }
+
+    /**
+     * Names of the tables a statement reads or writes, without schema qualifiers.
+     * This is a lexical approximation that can over-report, for example set-returning
+     * functions in a FROM list, but not miss a table named directly in the statement.
+     * Tables reached through views, functions or triggers are not seen.
+     * @return Table names; unquoted names are lower-cased as Postgres folds them
+     */
+    static Set<String> referencedTables(List<Token> tokens) {
+        Set<String> tables = new HashSet<>();
+        int i = 0;
+        while (i < tokens.size()) {
+            Token token = tokens.get(i++);
+            if (token.type != TokenType.WORD || !TABLE_KEYWORDS.contains(token.text.toLowerCase(Locale.ROOT))) {
+                continue;
+            }
+
+            boolean nameList = token.isWord("from") || token.isWord("truncate");
+            while (true) {
+                while (i < tokens.size() && (tokens.get(i).isWord("only") || tokens.get(i).isWord("table"))) {
+                    i++;
+                }
+                int nameEnd = readTableName(tokens, i, tables);
+                if (nameEnd == i || !nameList) {
+                    break;
+                }
+                i = nameEnd;
+                // Skip an alias, then continue a comma-separated list
+                if (i < tokens.size() && tokens.get(i).isWord("as")) {
+                    i++;
+                }
+                if (i < tokens.size() && isIdentifier(tokens.get(i))) {
+                    i++;
+                }
+                if (i < tokens.size() && tokens.get(i).isSymbol(",")) {
+                    i++;
+                } else {
+                    break;
+                }
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Reads a possibly schema-qualified name starting at index and adds its last part
+     * @return Index after the name, or index itself if no name starts there
+     */
+    private static int readTableName(List<Token> tokens, int index, Set<String> tables) {
+        String name = null;
+        int i = index;
+        while (i < tokens.size() && isIdentifier(tokens.get(i))) {
+            name = identifierName(tokens.get(i));
+            i++;
+            if (i + 1 < tokens.size() && tokens.get(i).isSymbol(".") && isIdentifier(tokens.get(i + 1))) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        if (name != null) {
+            tables.add(name);
+        }
+        return i;
+    }
+
+    private static boolean isIdentifier(Token token) {
+        return token.type == TokenType.QUOTED_IDENTIFIER
+                || (token.type == TokenType.WORD && !CLAUSE_KEYWORDS.contains(token.text.toLowerCase(Locale.ROOT)));
+    }
+
+    private static String identifierName(Token token) {
+        if (token.type == TokenType.QUOTED_IDENTIFIER) {
+            return token.text.substring(1, token.text.length() - 1).replace("\"\"", "\"");
+        }
+        return token.text.toLowerCase(Locale.ROOT);
+    }
+
+    private static int skipQuoted(String sql, int open, char quote, boolean backslashEscapes) {
+        int i = open + 1;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (backslashEscapes && c == '\\') {
+                i += 2;
+            } else if (c == quote) {
+                // A doubled quote is an escaped quote
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        throw new IllegalArgumentException("Unterminated quoted text at offset " + open);
+    }
+
+    private static int skipBlockComment(String sql, int open) {
+        // Postgres block comments nest
+        int depth = 0;
+        int i = open;
+        while (i < sql.length()) {
+            if (sql.startsWith("/*", i)) {
+                depth++;
+                i += 2;
+            } else if (sql.startsWith("*/", i)) {
+                depth--;
+                i += 2;
+                if (depth == 0) {
+                    return i;
+                }
+            } else {
+                i++;
+            }
+        }
+        throw new IllegalArgumentException("Unterminated comment at offset " + open);
+    }
+
+    private static int skipNumber(String sql, int start) {
+        int i = start;
+        while (i < sql.length() && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+            i++;
+        }
+        if (i < sql.length() && (sql.charAt(i) == 'e' || sql.charAt(i) == 'E')) {
+            int exponent = i + 1;
+            if (exponent < sql.length() && (sql.charAt(exponent) == '+' || sql.charAt(exponent) == '-')) {
+                exponent++;
+            }
+            if (exponent < sql.length() && Character.isDigit(sql.charAt(exponent))) {
+                i = exponent;
+                while (i < sql.length() && Character.isDigit(sql.charAt(i))) {
+                    i++;
+                }
+            }
+        }
+        return i;
+    }
+
+    /**
+     * @return Index after a dollar-quote tag such as $$ or $body$ starting at i, or -1
+     */
+    private static int dollarTagEnd(String sql, int i) {
+        int j = i + 1;
+        while (j < sql.length() && (Character.isLetterOrDigit(sql.charAt(j)) || sql.charAt(j) == '_')) {
+            j++;
+        }
+        return j < sql.length() && sql.charAt(j) == '$' ? j + 1 : -1;
+    }
+
+    private static boolean isOperatorChar(char c) {
+        return "+-*/<>=~!@#%^&|`?:".indexOf(c) >= 0;
+    }
+}
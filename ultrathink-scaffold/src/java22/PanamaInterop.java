@@ -0,0 +1,451 @@
+/**
+ * Java 22+ Interop backend built on the Foreign Function & Memory API
+ * Calls the Magic library's C entry points directly instead of going through JNI
+ */
+package com.modular.database;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/**
+ * Foreign Function & Memory counterpart of Interop. Offers the same handle-based
+ * calls, plus result and statement views whose native memory is tied to an Arena:
+ * result blocks are read in place from the library's buffers without a copy, and
+ * any access after the view is closed fails instead of touching freed memory.
+ *
+ * Requires Java 22+ and --enable-native-access for this module. Short calls use
+ * critical downcalls, which skip the thread state transition JNI always pays.
+ */
+final class PanamaInterop {
+    private static final String LIBRARY = "magic";
+    private static final Linker LINKER = Linker.nativeLinker();
+    private static final SymbolLookup SYMBOLS = loadLibrary();
+    // Critical calls must not block or call back into Java; used for in-memory accessors only
+    private static final Linker.Option CRITICAL = Linker.Option.critical(false);
+
+    private static final MethodHandle CREATE_CONNECTION =
+            downcall("magic_create_connection", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+    private static final MethodHandle CLOSE_CONNECTION =
+            downcall("magic_close_connection", FunctionDescriptor.ofVoid(JAVA_INT));
+    private static final MethodHandle EXECUTE_QUERY =
+            downcall("magic_execute_query", FunctionDescriptor.of(JAVA_INT, JAVA_INT, ADDRESS));
+    private static final MethodHandle EXECUTE_NON_QUERY =
+            downcall("magic_execute_non_query", FunctionDescriptor.of(JAVA_INT, JAVA_INT, ADDRESS));
+    private static final MethodHandle IS_CONNECTION_VALID =
+            downcall("magic_is_connection_valid", FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+    private static final MethodHandle GET_LAST_ERROR =
+            downcall("magic_get_last_error", FunctionDescriptor.of(ADDRESS, JAVA_INT), CRITICAL);
+    private static final MethodHandle FREE_RESULT =
+            downcall("magic_free_result", FunctionDescriptor.ofVoid(JAVA_INT));
+    private static final MethodHandle GET_ROW_COUNT =
+            downcall("magic_get_row_count", FunctionDescriptor.of(JAVA_INT, JAVA_INT), CRITICAL);
+    private static final MethodHandle GET_COLUMN_COUNT =
+            downcall("magic_get_column_count", FunctionDescriptor.of(JAVA_INT, JAVA_INT), CRITICAL);
+    private static final MethodHandle GET_VALUE =
+            downcall("magic_get_value", FunctionDescriptor.of(ADDRESS, JAVA_INT, JAVA_INT, JAVA_INT), CRITICAL);
+    // Points rowsOut/dataOut at the library's encoded block (length-prefixed UTF-8 values,
+    // -1 for NULL) and returns its size in bytes, or -1 on error. The block stays valid
+    // until the result is freed.
+    private static final MethodHandle FETCH_ROWS_VIEW =
+            downcall("magic_fetch_rows_view",
+                     FunctionDescriptor.of(JAVA_LONG, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS, ADDRESS), CRITICAL);
+    private static final MethodHandle PREPARE_STATEMENT =
+            downcall("magic_prepare_statement", FunctionDescriptor.of(JAVA_INT, JAVA_INT, ADDRESS));
+    // Binds by pointer; the value must stay alive until it is rebound or the statement is closed
+    private static final MethodHandle BIND_PARAMETER =
+            downcall("magic_bind_parameter",
+                     FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS, JAVA_INT), CRITICAL);
+    private static final MethodHandle EXECUTE_PREPARED =
+            downcall("magic_execute_prepared", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT));
+    private static final MethodHandle CLOSE_PREPARED =
+            downcall("magic_close_prepared", FunctionDescriptor.ofVoid(JAVA_INT, JAVA_INT));
+
+    private PanamaInterop() {
+    }
+
+    /**
+     * @return true if the Magic library exposes the C entry points this backend needs
+     */
+    static boolean isAvailable() {
+        return SYMBOLS.find("magic_fetch_rows_view").isPresent();
+    }
+
+    static int createConnection(String connectionString) {
+        try (Arena arena = Arena.ofConfined()) {
+            return (int) CREATE_CONNECTION.invokeExact(arena.allocateFrom(connectionString));
+        } catch (Throwable t) {
+            throw failure("createConnection", t);
+        }
+    }
+
+    static void closeConnection(int connectionId) {
+        try {
+            CLOSE_CONNECTION.invokeExact(connectionId);
+        } catch (Throwable t) {
+            throw failure("closeConnection", t);
+        }
+    }
+
+    static int executeQuery(int connectionId, String sql) {
+        try (Arena arena = Arena.ofConfined()) {
+            return (int) EXECUTE_QUERY.invokeExact(connectionId, arena.allocateFrom(sql));
+        } catch (Throwable t) {
+            throw failure("executeQuery", t);
+        }
+    }
+
+    static int executeNonQuery(int connectionId, String sql) {
+        try (Arena arena = Arena.ofConfined()) {
+            return (int) EXECUTE_NON_QUERY.invokeExact(connectionId, arena.allocateFrom(sql));
+        } catch (Throwable t) {
+            throw failure("executeNonQuery", t);
+        }
+    }
+
+    static boolean isConnectionValid(int connectionId) {
+        try {
+            return (int) IS_CONNECTION_VALID.invokeExact(connectionId) != 0;
+        } catch (Throwable t) {
+            throw failure("isConnectionValid", t);
+        }
+    }
+
+    static String getLastError(int connectionId) {
+        try {
+            return readCString((MemorySegment) GET_LAST_ERROR.invokeExact(connectionId));
+        } catch (Throwable t) {
+            throw failure("getLastError", t);
+        }
+    }
+
+    static void freeResult(int resultId) {
+        try {
+            FREE_RESULT.invokeExact(resultId);
+        } catch (Throwable t) {
+            throw failure("freeResult", t);
+        }
+    }
+
+    static int getRowCount(int resultId) {
+        try {
+            return (int) GET_ROW_COUNT.invokeExact(resultId);
+        } catch (Throwable t) {
+            throw failure("getRowCount", t);
+        }
+    }
+
+    static int getColumnCount(int resultId) {
+        try {
+            return (int) GET_COLUMN_COUNT.invokeExact(resultId);
+        } catch (Throwable t) {
+            throw failure("getColumnCount", t);
+        }
+    }
+
+    static String getValue(int resultId, int row, int column) {
+        try {
+            return readCString((MemorySegment) GET_VALUE.invokeExact(resultId, row, column));
+        } catch (Throwable t) {
+            throw failure("getValue", t);
+        }
+    }
+
+    /**
+     * Takes ownership of a result handle. Closing the view frees the result and
+     * invalidates every block read from it.
+     */
+    static ResultView openResult(int resultId) {
+        return new ResultView(resultId);
+    }
+
+    /**
+     * Prepares a statement that owns the native memory of its bound parameters
+     * @return The statement, or null if preparation failed (see getLastError)
+     */
+    static StatementView prepareStatement(int connectionId, String sql) {
+        int statementId;
+        try (Arena arena = Arena.ofConfined()) {
+            statementId = (int) PREPARE_STATEMENT.invokeExact(connectionId, arena.allocateFrom(sql));
+        } catch (Throwable t) {
+            throw failure("prepareStatement", t);
+        }
+        return statementId <= 0 ? null : new StatementView(connectionId, statementId);
+    }
+
+    /**
+     * Result set whose native blocks are mapped into Java without copying
+     */
+    static final class ResultView implements AutoCloseable {
+        private final int resultId;
+        // Shared so a view can be handed between threads; blocks are read-only
+        private final Arena arena = Arena.ofShared();
+        private final int rowCount;
+        private final int columnCount;
+
+        private ResultView(int resultId) {
+            this.resultId = resultId;
+            this.rowCount = getRowCount(resultId);
+            this.columnCount = getColumnCount(resultId);
+        }
+
+        int rowCount() {
+            return rowCount;
+        }
+
+        int columnCount() {
+            return columnCount;
+        }
+
+        /**
+         * Maps a block of rows in place. The segment is bounded to the block and
+         * becomes inaccessible once this view is closed.
+         * @return Block in the fetchRows encoding; rowsInBlock() gives its row count
+         */
+        Block fetchRows(int startRow, int maxRows) {
+            try (Arena call = Arena.ofConfined()) {
+                MemorySegment rowsOut = call.allocate(JAVA_INT);
+                MemorySegment dataOut = call.allocate(ADDRESS);
+                long length = (long) FETCH_ROWS_VIEW.invokeExact(resultId, startRow, maxRows, rowsOut, dataOut);
+                if (length < 0) {
+                    throw new IllegalStateException("Failed to map rows starting at " + startRow);
+                }
+                MemorySegment data = dataOut.get(ADDRESS, 0).reinterpret(length, arena, null);
+                return new Block(data, rowsOut.get(JAVA_INT, 0), columnCount);
+            } catch (IllegalStateException e) {
+                throw e;
+            } catch (Throwable t) {
+                throw failure("fetchRows", t);
+            }
+        }
+
+        /**
+         * Frees the native result; blocks mapped from it can no longer be read
+         */
+        @Override
+        public void close() {
+            if (arena.scope().isAlive()) {
+                arena.close();
+                freeResult(resultId);
+            }
+        }
+    }
+
+    /**
+     * Rows mapped from native memory. Values are decoded straight from the segment,
+     * so only the Strings a caller asks for are ever allocated.
+     */
+    static final class Block {
+        private final MemorySegment data;
+        private final int rows;
+        private final int columns;
+        private long cursor = 0;
+
+        private Block(MemorySegment data, int rows, int columns) {
+            this.data = data;
+            this.rows = rows;
+            this.columns = columns;
+        }
+
+        int rowsInBlock() {
+            return rows;
+        }
+
+        int columns() {
+            return columns;
+        }
+
+        /**
+         * Reads the next value in row-major order
+         * @return The value, or null for SQL NULL
+         */
+        String nextValue() {
+            int length = data.get(JAVA_INT, cursor);
+            cursor += Integer.BYTES;
+            if (length < 0) {
+                return null;
+            }
+            String value = new String(data.asSlice(cursor, length).toArray(JAVA_BYTE), StandardCharsets.UTF_8);
+            cursor += length;
+            return value;
+        }
+
+        /**
+         * Skips the next value without decoding it
+         */
+        void skipValue() {
+            int length = data.get(JAVA_INT, cursor);
+            cursor += Integer.BYTES + Math.max(length, 0);
+        }
+    }
+
+    /**
+     * Prepared statement that keeps one native buffer per parameter index. Rebinding
+     * copies into the existing buffer, and a buffer is only replaced when a value
+     * outgrows it, so a long-lived cached statement holds at most its largest values.
+     * Buffers live in shared arenas, so the statement can be used from whichever
+     * thread checks it out; callers must still serialize binds and executes.
+     */
+    static final class StatementView implements AutoCloseable {
+        // Smallest buffer allocated for a parameter; buffers grow by doubling past it
+        private static final int MIN_BUFFER_SIZE = 64;
+
+        private final int connectionId;
+        private final int statementId;
+        private Parameter[] parameters = new Parameter[0];
+        private boolean closed = false;
+
+        private StatementView(int connectionId, int statementId) {
+            this.connectionId = connectionId;
+            this.statementId = statementId;
+        }
+
+        boolean bindString(int index, String value) {
+            if (closed) {
+                throw new IllegalStateException("Statement is closed");
+            }
+            if (value == null || index < 0) {
+                return bind(index, MemorySegment.NULL, -1);
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            Parameter current = index < parameters.length ? parameters[index] : null;
+            // The library binds by pointer, so a replaced buffer stays alive until the new one is bound
+            Parameter target = current != null && current.fits(bytes.length)
+                    ? current
+                    : new Parameter(bytes.length);
+            target.write(bytes);
+            boolean bound;
+            try {
+                bound = bind(index, target.buffer, bytes.length);
+            } catch (RuntimeException e) {
+                if (target != current) {
+                    target.arena.close();
+                }
+                throw e;
+            }
+            if (target != current) {
+                if (bound) {
+                    store(index, target);
+                    if (current != null) {
+                        current.arena.close();
+                    }
+                } else {
+                    target.arena.close();
+                }
+            }
+            return bound;
+        }
+
+        boolean bindInt(int index, int value) {
+            return bindString(index, Integer.toString(value));
+        }
+
+        /**
+         * @return Result handle, or <= 0 on error (see getLastError)
+         */
+        int execute() {
+            try {
+                return (int) EXECUTE_PREPARED.invokeExact(connectionId, statementId);
+            } catch (Throwable t) {
+                throw failure("executePrepared", t);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                CLOSE_PREPARED.invokeExact(connectionId, statementId);
+            } catch (Throwable t) {
+                throw failure("closePrepared", t);
+            } finally {
+                for (Parameter parameter : parameters) {
+                    if (parameter != null) {
+                        parameter.arena.close();
+                    }
+                }
+                parameters = new Parameter[0];
+            }
+        }
+
+        private boolean bind(int index, MemorySegment text, int length) {
+            try {
+                return (int) BIND_PARAMETER.invokeExact(connectionId, statementId, index, text, length) > 0;
+            } catch (Throwable t) {
+                throw failure("bindString", t);
+            }
+        }
+
+        private void store(int index, Parameter parameter) {
+            if (index >= parameters.length) {
+                parameters = Arrays.copyOf(parameters, Math.max(index + 1, parameters.length * 2));
+            }
+            parameters[index] = parameter;
+        }
+
+        /**
+         * NUL-terminated UTF-8 buffer for one parameter index, freed on its own
+         * when it is replaced by a larger one
+         */
+        private static final class Parameter {
+            final Arena arena = Arena.ofShared();
+            final MemorySegment buffer;
+
+            Parameter(int length) {
+                int size = Math.max(MIN_BUFFER_SIZE, Integer.highestOneBit(length) << 1);
+                this.buffer = arena.allocate(size);
+            }
+
+            boolean fits(int length) {
+                return length < buffer.byteSize();
+            }
+
+            void write(byte[] bytes) {
+                MemorySegment.copy(bytes, 0, buffer, JAVA_BYTE, 0, bytes.length);
+                buffer.set(JAVA_BYTE, bytes.length, (byte) 0);
+            }
+        }
+    }
+
+    private static SymbolLookup loadLibrary() {
+        try {
+            return SymbolLookup.libraryLookup(System.mapLibraryName(LIBRARY), Arena.global());
+        } catch (IllegalArgumentException e) {
+            // Library not on the loader path; every symbol lookup will come back empty
+            return name -> Optional.empty();
+        }
+    }
+
+    private static MethodHandle downcall(String symbol, FunctionDescriptor descriptor, Linker.Option... options) {
+        return SYMBOLS.find(symbol)
+                .map(address -> LINKER.downcallHandle(address, descriptor, options))
+                .orElse(null);
+    }
+
+    private static String readCString(MemorySegment pointer) {
+        if (pointer.equals(MemorySegment.NULL)) {
+            return null;
+        }
+        return pointer.reinterpret(Long.MAX_VALUE).getString(0);
+    }
+
+    private static RuntimeException failure(String call, Throwable t) {
+        if (t instanceof RuntimeException e) {
+            return e;
+        }
+        return new IllegalStateException("Native call " + call + " failed", t);
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * JMH comparison of the JNI Interop and the Java 22 FFM PanamaInterop backends
+ * Measures the per-call cost of each boundary on the same native result
+ */
+package com.modular.database;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call JNI vs. FFM benchmarks. Each pair makes the same call through both
+ * backends against one result held open for the whole trial, so the difference is
+ * the cost of crossing the boundary and marshalling, not of the query:
+ * <ul>
+ *   <li>rowCount: a trivial int accessor; FFM uses a critical downcall</li>
+ *   <li>value: returns a String; JNI converts from modified UTF-8, FFM decodes UTF-8</li>
+ *   <li>block: decodes every value of a block; JNI copies into a direct buffer,
+ *       FFM reads the library's block in place</li>
+ *   <li>bindAndExecute: binds one String parameter and runs a prepared statement</li>
+ * </ul>
+ * Needs the Magic library on java.library.path, a database at {@link #CONNECTION_STRING},
+ * Java 22+ and --enable-native-access=ALL-UNNAMED.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = "--enable-native-access=ALL-UNNAMED")
+public class InteropBenchmark {
+    private static final String CONNECTION_STRING = "postgresql://localhost:5432/mydb";
+    private static final String SELECT_PARAMETER = "SELECT $1::text";
+
+    @Param({"100", "1000"})
+    int rows;
+
+    private int connectionId;
+    private int resultId;
+    private int columns;
+    private PanamaInterop.ResultView view;
+    private ByteBuffer buffer;
+    private int jniStatementId;
+    private PanamaInterop.StatementView ffmStatement;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (!PanamaInterop.isAvailable()) {
+            throw new IllegalStateException("Magic library with the FFM entry points is not loadable");
+        }
+        connectionId = Interop.createConnection(CONNECTION_STRING);
+        if (connectionId <= 0) {
+            throw new IllegalStateException("Failed to connect to " + CONNECTION_STRING);
+        }
+        resultId = Interop.executeQuery(connectionId,
+                "SELECT i, md5(i::text) FROM generate_series(1, " + rows + ") AS i");
+        if (resultId <= 0) {
+            throw new IllegalStateException("Query failed: " + Interop.getLastError(connectionId));
+        }
+        columns = Interop.getColumnCount(resultId);
+        // The view does not free the result here; tearDown frees it once
+        view = PanamaInterop.openResult(resultId);
+        buffer = ByteBuffer.allocateDirect(rows * columns * 64).order(ByteOrder.nativeOrder());
+        jniStatementId = Interop.prepareStatement(connectionId, SELECT_PARAMETER);
+        ffmStatement = PanamaInterop.prepareStatement(connectionId, SELECT_PARAMETER);
+        if (jniStatementId <= 0 || ffmStatement == null) {
+            throw new IllegalStateException("Prepare failed: " + Interop.getLastError(connectionId));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ffmStatement.close();
+        Interop.closePrepared(connectionId, jniStatementId);
+        // Closing the view frees the result
+        view.close();
+        Interop.closeConnection(connectionId);
+    }
+
+    @Benchmark
+    public int rowCountJni() {
+        return Interop.getRowCount(resultId);
+    }
+
+    @Benchmark
+    public int rowCountFfm() {
+        return PanamaInterop.getRowCount(resultId);
+    }
+
+    @Benchmark
+    public String valueJni() {
+        return Interop.getValue(resultId, 0, 1);
+    }
+
+    @Benchmark
+    public String valueFfm() {
+        return PanamaInterop.getValue(resultId, 0, 1);
+    }
+
+    @Benchmark
+    public void blockJni(Blackhole blackhole) {
+        buffer.clear();
+        int fetched = Interop.fetchRows(resultId, 0, rows, buffer);
+        for (int i = 0; i < fetched * columns; i++) {
+            int length = buffer.getInt();
+            if (length < 0) {
+                blackhole.consume((Object) null);
+                continue;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            blackhole.consume(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Benchmark
+    public void blockFfm(Blackhole blackhole) {
+        PanamaInterop.Block block = view.fetchRows(0, rows);
+        for (int i = 0; i < block.rowsInBlock() * block.columns(); i++) {
+            blackhole.consume(block.nextValue());
+        }
+    }
+
+    @Benchmark
+    public void bindAndExecuteJni() {
+        Interop.bindStringParameter(connectionId, jniStatementId, 1, "benchmark");
+        Interop.freeResult(Interop.executePrepared(connectionId, jniStatementId));
+    }
+
+    @Benchmark
+    public void bindAndExecuteFfm() {
+        ffmStatement.bindString(1, "benchmark");
+        PanamaInterop.freeResult(ffmStatement.execute());
+    }
+}
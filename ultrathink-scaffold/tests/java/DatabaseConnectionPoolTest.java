@@ -0,0 +1,107 @@
+package com.modular.database;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.After;
+import static org.junit.Assert.*;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+public class DatabaseConnectionPoolTest {
+    private static final Logger logger = Logger.getLogger(DatabaseConnectionPoolTest.class.getName());
+    private DatabaseConnectionPool pool;
+    private final String connectionString = "postgresql://localhost:5432/mydb";
+
+    @Before
+    public void setUp() throws DatabaseException {
+        pool = new DatabaseConnectionPool(connectionString, 2, 4);
+        pool.setBorrowTimeout(Duration.ofSeconds(5));
+        pool.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testMinimumConnectionsOpened() {
+        assertEquals("Pool should open minSize connections", 2, pool.getTotalConnections());
+        assertEquals("All connections should be idle", 2, pool.getIdleConnections());
+    }
+
+    @Test
+    public void testBorrowAndReturn() throws DatabaseException {
+        try (DatabaseConnectionPool.PooledConnection connection = pool.borrow();
+             QueryResult users = connection.query("SELECT id FROM users")) {
+            assertEquals("One connection should be active", 1, pool.getActiveConnections());
+            assertTrue("Should have at least 1 user", users.getRowCount() > 0);
+        }
+        assertEquals("Connection should be returned", 0, pool.getActiveConnections());
+    }
+
+    @Test(expected = DatabaseStateException.class)
+    public void testUseAfterReturn() throws DatabaseException {
+        DatabaseConnectionPool.PooledConnection connection = pool.borrow();
+        connection.close();
+        connection.query("SELECT id FROM users"); // Should throw exception
+    }
+
+    @Test(expected = DatabaseConnectionException.class)
+    public void testBorrowTimeout() throws DatabaseException {
+        for (int i = 0; i < 4; i++) {
+            pool.borrow();
+        }
+        pool.borrow(100, TimeUnit.MILLISECONDS); // Pool exhausted
+    }
+
+    @Test
+    public void testReturnClosesOpenCursor() throws DatabaseException {
+        DatabaseConnectionPool.PooledConnection connection = pool.borrow();
+        connection.openCursor("SELECT id FROM users", 1);
+        connection.close();
+
+        // The most recently returned connection is handed out first
+        try (DatabaseConnectionPool.PooledConnection next = pool.borrow();
+             QueryResult users = next.query("SELECT id FROM users")) {
+            assertTrue("Returned connection should not be held by the cursor", users.getRowCount() > 0);
+        }
+    }
+
+    @Test
+    public void testConcurrentBorrow() throws Exception {
+        int threadCount = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+        AtomicInteger successCount = new AtomicInteger(0);
+
+        for (int i = 0; i < threadCount; i++) {
+            final int threadId = i;
+            executor.submit(() -> {
+                try (DatabaseConnectionPool.PooledConnection connection = pool.borrow();
+                     QueryResult users = connection.query("SELECT id, username, email FROM users")) {
+                    if (users.getRowCount() > 0) {
+                        successCount.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    logger.severe("Thread " + threadId + " failed: " + e.getMessage());
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        latch.await();
+        executor.shutdown();
+
+        assertEquals("All threads should succeed", threadCount, successCount.get());
+        assertTrue("Pool should never exceed maxSize", pool.getTotalConnections() <= 4);
+    }
+}
@@ -4,15 +4,26 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.After;
 import static org.junit.Assert.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 public class DatabaseConnectorTest {
     private static final Logger logger = Logger.getLogger(DatabaseConnectorTest.class.getName());
@@ -92,6 +103,48 @@ public class DatabaseConnectorTest {
         db.execute("DELETE FROM users WHERE username LIKE 'batch%'");
     }
     
+    @Test
+    public void testPreparedBatchExecution() throws DatabaseException {
+        try (PreparedStatement insert = db.prepare("INSERT INTO users (username, email) VALUES (?, ?)")) {
+            for (int i = 1; i <= 3; i++) {
+                insert.bindString(1, "pbatch" + i);
+                insert.bindString(2, "pbatch" + i + "@example.com");
+                insert.addBatch();
+            }
+            
+            int[] affected = insert.executeBatch();
+            assertEquals("Should report one count per parameter set", 3, affected.length);
+            for (int count : affected) {
+                assertEquals("Each insert should affect 1 row", 1, count);
+            }
+        }
+        
+        try (QueryResult result = db.query("SELECT id FROM users WHERE username LIKE 'pbatch%'")) {
+            assertEquals("Should find 3 batch users", 3, result.getRowCount());
+        }
+        
+        // Clean up
+        db.execute("DELETE FROM users WHERE username LIKE 'pbatch%'");
+    }
+    
+    @Test
+    public void testCopyInAndOut() throws DatabaseException {
+        String csv = "copy1,copy1@example.com\ncopy2,copy2@example.com\n";
+        long loaded = db.copyIn("users", Arrays.asList("username", "email"),
+                Channels.newChannel(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))));
+        assertEquals("Should load 2 rows", 2, loaded);
+        
+        ByteArrayOutputStream exported = new ByteArrayOutputStream();
+        long rows = db.copyOut("SELECT username, email FROM users WHERE username LIKE 'copy%' ORDER BY username",
+                Channels.newChannel(exported));
+        assertEquals("Should export 2 rows", 2, rows);
+        assertEquals("Export should round-trip the loaded data", csv,
+                new String(exported.toByteArray(), StandardCharsets.UTF_8));
+        
+        // Clean up
+        db.execute("DELETE FROM users WHERE username LIKE 'copy%'");
+    }
+    
     @Test
     public void testConcurrentAccess() throws Exception {
         int threadCount = 10;
@@ -126,6 +179,345 @@ public class DatabaseConnectorTest {
         assertEquals("All threads should succeed", threadCount, successCount.get());
     }
     
+    @Test
+    public void testCursorStreaming() throws DatabaseException {
+        int rowCount;
+        try (QueryResult users = db.query("SELECT id FROM users")) {
+            rowCount = users.getRowCount();
+        }
+        
+        // A fetch size smaller than the table forces several round trips
+        try (ResultCursor cursor = db.openCursor("SELECT id, username FROM users", 2)) {
+            int streamed = 0;
+            String[] row;
+            while ((row = cursor.nextRow()) != null) {
+                assertEquals("Each row should have 2 columns", 2, row.length);
+                streamed++;
+            }
+            assertEquals("Cursor should return every row", rowCount, streamed);
+        }
+        
+        // Stopping early releases the connection for other statements
+        try (Stream<String[]> users = db.queryStream("SELECT username FROM users")) {
+            assertEquals("Should read only the first row", 1, users.limit(1).count());
+        }
+        try (QueryResult result = db.query("SELECT id FROM users")) {
+            assertEquals("Connection should be usable after the stream is closed", rowCount, result.getRowCount());
+        }
+    }
+    
+    @Test
+    public void testCursorWaitTimesOut() throws Exception {
+        db.setCursorWaitTimeout(Duration.ofMillis(200));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // Opened on another thread, so this thread waits for it instead of failing at once
+            ResultCursor cursor = executor.submit(() -> db.openCursor("SELECT id FROM users", 1)).get();
+            try {
+                db.query("SELECT 1");
+                fail("A statement should not wait forever for another thread's cursor");
+            } catch (DatabaseStateException e) {
+                // Expected
+            } finally {
+                cursor.close();
+            }
+            try (QueryResult result = db.query("SELECT 1")) {
+                assertEquals("Closing the cursor should release the connection", 1, result.getRowCount());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    @Test
+    public void testCursorRejectedInsideTransaction() throws DatabaseException {
+        db.execute("BEGIN");
+        try {
+            db.openCursor("SELECT id FROM users");
+            fail("Opening a cursor should not commit the caller's transaction");
+        } catch (DatabaseStateException e) {
+            // Expected
+        } finally {
+            db.execute("ROLLBACK");
+        }
+    }
+    
+    @Test
+    public void testTypedAccessors() throws DatabaseException {
+        try (QueryResult users = db.query("SELECT id, username, created_at FROM users ORDER BY id")) {
+            assertTrue("Should have at least 1 user", users.getRowCount() > 0);
+            
+            int[] ids = users.getIntColumn(0);
+            assertEquals("Column array should have one value per row", users.getRowCount(), ids.length);
+            assertEquals("Typed and text access should agree",
+                         Integer.parseInt(users.getValue(0, 0)), users.getInt(0, 0));
+            assertEquals("Int and long access should agree", ids[0], users.getLong(0, 0));
+            assertNotNull("created_at should be set", users.getTimestamp(0, 2));
+        }
+    }
+    
+    @Test(expected = DatabaseDataException.class)
+    public void testTypedAccessorTypeMismatch() throws DatabaseException {
+        try (QueryResult users = db.query("SELECT username FROM users")) {
+            users.getIntColumn(0); // Text column cannot be read as int
+        }
+    }
+    
+    @Test
+    public void testStatementCache() throws DatabaseException {
+        String sql = "SELECT username FROM users WHERE id = ?";
+        for (int i = 0; i < 3; i++) {
+            try (PreparedStatement statement = db.prepare(sql)) {
+                statement.bindInt(1, 1);
+                try (QueryResult result = statement.execute()) {
+                    assertTrue("Should find at most 1 user", result.getRowCount() <= 1);
+                }
+            }
+        }
+        
+        assertEquals("First prepare should miss", 1, db.getStatementCacheMisses());
+        assertEquals("Later prepares should reuse the cached statement", 2, db.getStatementCacheHits());
+        assertEquals("Closed statement should be cached", 1, db.getCachedStatementCount());
+        
+        db.setStatementCacheSize(0);
+        assertEquals("Shrinking the cache should evict", 1, db.getStatementCacheEvictions());
+    }
+
+    @Test
+    public void testClosedStatementStaysClosedAfterReuse() throws DatabaseException {
+        String sql = "SELECT username FROM users WHERE id = ?";
+        PreparedStatement first = db.prepare(sql);
+        first.close();
+        try (PreparedStatement second = db.prepare(sql)) {
+            assertNotSame("Each prepare should return its own statement", first, second);
+            assertEquals(1, db.getStatementCacheHits());
+
+            // A stray second close must not put the statement in use back in the cache
+            first.close();
+            try (PreparedStatement third = db.prepare(sql)) {
+                assertEquals("Statement in use should not be handed out again", 2, db.getStatementCacheMisses());
+            }
+            try {
+                first.bindInt(1, 1);
+                fail("Closed statement should reject binds");
+            } catch (DatabaseException expected) {
+                // expected
+            }
+
+            second.bindInt(1, 1);
+            try (QueryResult result = second.execute()) {
+                assertTrue("Should find at most 1 user", result.getRowCount() <= 1);
+            }
+        }
+    }
+
+    @Test
+    public void testCachedStatementRejectsUnboundParameter() throws DatabaseException {
+        String sql = "SELECT CAST(? AS int) + CAST(? AS int)";
+        try (PreparedStatement first = db.prepare(sql)) {
+            first.bindInt(1, 1);
+            first.bindInt(2, 2);
+            first.execute().close();
+        }
+        
+        try (PreparedStatement second = db.prepare(sql)) {
+            assertEquals("Second prepare should reuse the cached statement", 1, db.getStatementCacheHits());
+            second.bindInt(1, 5);
+            try {
+                second.execute();
+                fail("Executing with parameter 2 unbound should not reuse the previous caller's value");
+            } catch (DatabaseException e) {
+                assertTrue("Error should name the unbound parameter", e.getMessage().contains("Parameter 2"));
+            }
+            
+            second.bindInt(2, 10);
+            try (QueryResult result = second.execute()) {
+                assertEquals("Only this caller's values should be used", 15, result.getInt(0, 0));
+            }
+        }
+    }
+    
+    @Test
+    public void testResultCacheInvalidation() throws DatabaseException {
+        db.setResultCacheCapacity(10_000);
+        
+        ResultSnapshot first = db.queryCached("SELECT id FROM users WHERE username = 'cacheuser'");
+        ResultSnapshot second = db.queryCached("select id\n  from USERS where username = 'cacheuser';");
+        assertSame("Equivalent SQL should be served from the cache", first, second);
+        assertEquals("Second call should be a hit", 1, db.getResultCacheHits());
+        
+        db.execute("INSERT INTO users (username, email) VALUES ('cacheuser', 'cache@example.com')");
+        try {
+            ResultSnapshot afterWrite = db.queryCached("SELECT id FROM users WHERE username = 'cacheuser'");
+            assertEquals("Write to users should invalidate the cached result",
+                         first.getRowCount() + 1, afterWrite.getRowCount());
+        } finally {
+            db.execute("DELETE FROM users WHERE username = 'cacheuser'");
+        }
+    }
+    
+    @Test
+    public void testResultCacheInvalidatedByWritingQuery() throws DatabaseException {
+        db.setResultCacheCapacity(10_000);
+        
+        ResultSnapshot before = db.queryCached("SELECT id FROM users WHERE username = 'returninguser'");
+        try (QueryResult inserted = db.query(
+                "INSERT INTO users (username, email) VALUES ('returninguser', 'returning@example.com') RETURNING id")) {
+            assertEquals("RETURNING should produce the new row", 1, inserted.getRowCount());
+        }
+        try {
+            ResultSnapshot after = db.queryCached("SELECT id FROM users WHERE username = 'returninguser'");
+            assertEquals("A write through query() should invalidate cached results",
+                         before.getRowCount() + 1, after.getRowCount());
+        } finally {
+            db.execute("DELETE FROM users WHERE username = 'returninguser'");
+        }
+    }
+    
+    @Test
+    public void testAutoParameterization() throws DatabaseException {
+        db.setAutoParameterize(true);
+        try {
+            for (int i = 0; i < 3; i++) {
+                assertEquals("Parameterized insert should affect 1 row", 1, db.execute(
+                    "INSERT INTO users (username, email) VALUES ('paramuser" + i + "', 'param" + i + "@example.com')"));
+            }
+            try (QueryResult result = db.query("SELECT id FROM users WHERE username LIKE 'paramuser%'")) {
+                assertEquals("Should find all parameterized inserts", 3, result.getRowCount());
+            }
+            assertTrue("Inserts differing only in literals should share a cached statement",
+                       db.getStatementCacheHits() >= 2);
+        } finally {
+            db.execute("DELETE FROM users WHERE username LIKE 'paramuser%'");
+            db.setAutoParameterize(false);
+        }
+    }
+
+    @Test
+    public void testAutoParameterizationInsideTransaction() throws DatabaseException {
+        db.setAutoParameterize(true);
+        db.execute("BEGIN");
+        try {
+            assertEquals(1, db.execute("INSERT INTO users (username, email) VALUES ('txparam', 'tx@example.com')"));
+            // As $1 IS NOT NULL this shape cannot be prepared; a failed prepare would abort the transaction
+            try (QueryResult result = db.query(
+                "SELECT id FROM users WHERE 'txparam' IS NOT NULL AND username = 'txparam'")) {
+                assertEquals("Statement should run inline inside the transaction", 1, result.getRowCount());
+            }
+            try (QueryResult result = db.query("SELECT id FROM users WHERE username = 'txparam'")) {
+                assertEquals("Transaction should still be usable", 1, result.getRowCount());
+            }
+        } finally {
+            db.execute("ROLLBACK");
+            db.setAutoParameterize(false);
+        }
+        try (QueryResult result = db.query("SELECT id FROM users WHERE username = 'txparam'")) {
+            assertEquals("Insert should be rolled back", 0, result.getRowCount());
+        }
+    }
+
+    @Test
+    public void testPipelinedAsyncQueries() throws Exception {
+        List<CompletableFuture<QueryResult>> lookups = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            lookups.add(db.queryAsync("SELECT id FROM users LIMIT 1"));
+        }
+        CompletableFuture<Integer> update = db.executeAsync("UPDATE users SET username = username WHERE id < 0");
+        CompletableFuture<QueryResult> invalid = db.queryAsync("SELECT * FROM nonexistent_table");
+        
+        for (CompletableFuture<QueryResult> lookup : lookups) {
+            try (QueryResult result = lookup.get(10, TimeUnit.SECONDS)) {
+                assertEquals("Each lookup should return 1 row", 1, result.getRowCount());
+            }
+        }
+        assertEquals("Update should match no rows", Integer.valueOf(0), update.get(10, TimeUnit.SECONDS));
+        
+        try {
+            invalid.get(10, TimeUnit.SECONDS);
+            fail("Should have failed for invalid table");
+        } catch (ExecutionException e) {
+            assertTrue("Failure should be a query exception", e.getCause() instanceof DatabaseQueryException);
+        }
+    }
+    
+    @Test
+    public void testPipelinedQueriesAfterReconnect() throws Exception {
+        db.close();
+        db.connect();
+        
+        try (QueryResult result = db.queryAsync("SELECT id FROM users LIMIT 1").get(10, TimeUnit.SECONDS)) {
+            assertEquals("Pipeline should accept queries after reconnecting", 1, result.getRowCount());
+        }
+        assertEquals("Update should match no rows", Integer.valueOf(0),
+                     db.executeAsync("UPDATE users SET username = username WHERE id < 0").get(10, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    public void testPipelinedFailureIsolation() throws Exception {
+        // Queued back to back so they share one pipelined batch
+        CompletableFuture<Integer> insert = db.executeAsync(
+            "INSERT INTO users (username, email) VALUES ('pipelineuser', 'pipeline@example.com')");
+        CompletableFuture<QueryResult> invalid = db.queryAsync("SELECT * FROM nonexistent_table");
+        CompletableFuture<QueryResult> after = db.queryAsync("SELECT id FROM users WHERE username = 'pipelineuser'");
+        
+        try {
+            assertEquals("Insert before the failure should succeed", Integer.valueOf(1), insert.get(10, TimeUnit.SECONDS));
+            try {
+                invalid.get(10, TimeUnit.SECONDS);
+                fail("Should have failed for invalid table");
+            } catch (ExecutionException e) {
+                assertTrue("Failure should be a query exception", e.getCause() instanceof DatabaseQueryException);
+            }
+            try (QueryResult result = after.get(10, TimeUnit.SECONDS)) {
+                assertEquals("Statement after the failure should still run", 1, result.getRowCount());
+            }
+            
+            // The insert must have committed, not been rolled back with the failed query
+            try (QueryResult committed = db.query("SELECT id FROM users WHERE username = 'pipelineuser'")) {
+                assertEquals("Insert should be committed", 1, committed.getRowCount());
+            }
+        } finally {
+            db.execute("DELETE FROM users WHERE username = 'pipelineuser'");
+        }
+    }
+    
+    @Test
+    public void testSnapshotConcurrentReads() throws Exception {
+        ResultSnapshot users;
+        QueryResult result = db.query("SELECT id, username, email FROM users");
+        int rowCount = result.getRowCount();
+        users = result.snapshot();
+        
+        assertEquals("Snapshot should keep every row", rowCount, users.getRowCount());
+        try {
+            result.getRowCount();
+            fail("Snapshot should close the native result");
+        } catch (DatabaseStateException expected) {
+            // Native result already freed
+        }
+        
+        int threadCount = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+        AtomicInteger successCount = new AtomicInteger(0);
+        for (int i = 0; i < threadCount; i++) {
+            executor.submit(() -> {
+                try {
+                    for (int row = 0; row < users.getRowCount(); row++) {
+                        assertNotNull("Username should not be null", users.getValue(row, "username"));
+                    }
+                    successCount.incrementAndGet();
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        
+        latch.await();
+        executor.shutdown();
+        assertEquals("All threads should succeed", threadCount, successCount.get());
+    }
+    
     @Test(expected = DatabaseQueryException.class)
     public void testInvalidQuery() throws DatabaseException {
         db.query("SELECT * FROM nonexistent_table");
@@ -139,6 +531,114 @@ public class DatabaseConnectorTest {
         result.getRowCount(); // Should throw exception
     }
     
+    @Test
+    public void testOpenHandleTracking() throws DatabaseException {
+        int before = db.getOpenResultCount();
+        QueryResult result = db.query("SELECT id FROM users");
+        assertEquals("Open result should be tracked", before + 1, db.getOpenResultCount());
+        
+        result.close();
+        assertEquals("Closed result should be released", before, db.getOpenResultCount());
+        assertEquals("Closed result is not a leak", 0, db.getLeakedHandleCount());
+    }
+    
+    @Test
+    public void testClosedCircuitWhileConnected() throws DatabaseException {
+        assertEquals("Healthy connection should have a closed circuit",
+                     DatabaseConnector.CircuitState.CLOSED, db.getCircuitState());
+        
+        db.close();
+        try {
+            db.query("SELECT 1");
+            fail("Query on a closed connector should fail");
+        } catch (DatabaseStateException e) {
+            // Closed on purpose, so this is a state error rather than an outage
+        }
+    }
+    
+    @Test
+    public void testOpenCircuitFailsWithConnectionError() throws DatabaseException {
+        // Long enough that the circuit stays open for the rest of the test
+        db.setReconnectBackoff(Duration.ofSeconds(30), Duration.ofSeconds(30));
+        int pid;
+        try (QueryResult result = db.query("SELECT pg_backend_pid()")) {
+            pid = result.getInt(0, 0);
+        }
+        DatabaseConnector admin = new DatabaseConnector(connectionString);
+        admin.connect();
+        try {
+            admin.query("SELECT pg_terminate_backend(" + pid + ")").close();
+        } finally {
+            admin.close();
+        }
+        
+        try {
+            db.query("SELECT 1");
+            fail("Query on a terminated connection should fail");
+        } catch (DatabaseException e) {
+            // Expected
+        }
+        // The background check finds the connection dead and opens the circuit
+        db.checkHealth();
+        assertEquals("Dropped connection should open the circuit",
+                     DatabaseConnector.CircuitState.OPEN, db.getCircuitState());
+        try {
+            db.query("SELECT 1");
+            fail("Query while the circuit is open should fail fast");
+        } catch (DatabaseConnectionException e) {
+            // An outage, so pools discard the connector instead of reusing it
+        }
+    }
+    
+    @Test
+    public void testConnectAfterClose() throws DatabaseException {
+        db.close();
+        db.connect();
+        assertEquals("Reconnected connector should have a closed circuit",
+                     DatabaseConnector.CircuitState.CLOSED, db.getCircuitState());
+        
+        try (QueryResult result = db.query("SELECT 1")) {
+            assertEquals("Query after reconnecting should return 1 row", 1, result.getRowCount());
+        }
+    }
+    
+    @Test
+    public void testHealthCheckIntervalChangedAfterConnect() throws Exception {
+        DatabaseConnector checked = new DatabaseConnector(connectionString);
+        checked.setHealthCheckInterval(Duration.ZERO);
+        checked.connect();
+        try {
+            Instant connected = checked.getLastValidated();
+            checked.setHealthCheckInterval(Duration.ofMillis(100));
+            Thread.sleep(1000);
+            assertTrue("Enabling checks after connect should start them",
+                       checked.getLastValidated().isAfter(connected));
+            
+            checked.close();
+            checked.connect();
+            Instant reconnected = checked.getLastValidated();
+            Thread.sleep(1000);
+            assertTrue("Checks should run again after reconnecting a closed connector",
+                       checked.getLastValidated().isAfter(reconnected));
+        } finally {
+            checked.close();
+        }
+    }
+    
+    @Test
+    public void testSqlErrorDoesNotMarkSuspect() throws DatabaseException {
+        assertNotNull("Opening the connection should count as validation", db.getLastValidated());
+        
+        try {
+            db.query("SELECT * FROM nonexistent_table");
+            fail("Query on a missing table should fail");
+        } catch (DatabaseQueryException e) {
+            // Expected
+        }
+        assertFalse("SQL errors should not mark the connection suspect", db.isSuspect());
+        assertEquals("No health check should have failed", 0, db.getHealthCheckFailureCount());
+    }
+    
     @Test
     public void testConcurrentMap() throws DatabaseException {
         try (QueryResult users = db.query("SELECT id, username, email FROM users")) {
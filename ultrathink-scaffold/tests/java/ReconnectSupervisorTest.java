@@ -0,0 +1,105 @@
+package com.modular.database;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ReconnectSupervisorTest {
+    private static final String CONNECTION_STRING = "postgresql://localhost:5432/mydb";
+    
+    @Test
+    public void testBackoffStaysWithinBounds() {
+        ReconnectSupervisor supervisor = new ReconnectSupervisor(new DatabaseConnector(CONNECTION_STRING));
+        supervisor.setBackoff(100, 30_000);
+        
+        for (int attempt = 1; attempt <= 40; attempt++) {
+            long ceiling = Math.min(100L * (1L << (attempt - 1)), 30_000);
+            for (int sample = 0; sample < 200; sample++) {
+                long delay = supervisor.backoffMillis(attempt);
+                assertTrue("Attempt " + attempt + " waited " + delay + " ms, less than half of " + ceiling,
+                           delay >= ceiling / 2);
+                assertTrue("Attempt " + attempt + " waited " + delay + " ms, more than " + ceiling,
+                           delay <= ceiling);
+            }
+        }
+    }
+    
+    @Test
+    public void testBackoffDoesNotOverflow() {
+        ReconnectSupervisor supervisor = new ReconnectSupervisor(new DatabaseConnector(CONNECTION_STRING));
+        supervisor.setBackoff(1L << 40, Long.MAX_VALUE);
+        
+        for (int attempt : new int[] {30, 31, 63, 64, 1000, Integer.MAX_VALUE}) {
+            long delay = supervisor.backoffMillis(attempt);
+            assertTrue("Attempt " + attempt + " should not shrink the delay, got " + delay, delay >= 1L << 39);
+        }
+        assertTrue("Large attempt numbers should keep the longest delay",
+                   supervisor.backoffMillis(Integer.MAX_VALUE) >= 1L << 61);
+        
+        supervisor.setBackoff(100, 30_000);
+        long delay = supervisor.backoffMillis(Integer.MAX_VALUE);
+        assertTrue("Delay should stay capped at the maximum, got " + delay, delay >= 15_000 && delay <= 30_000);
+    }
+    
+    @Test
+    public void testCircuitTransitions() throws Exception {
+        StubConnector connector = new StubConnector();
+        ReconnectSupervisor supervisor = new ReconnectSupervisor(connector);
+        supervisor.setBackoff(200, 200);
+        assertEquals(DatabaseConnector.CircuitState.CLOSED, supervisor.getState());
+        
+        supervisor.connectionLost();
+        assertEquals("Losing the connection should open the circuit",
+                     DatabaseConnector.CircuitState.OPEN, supervisor.getState());
+        assertTrue(supervisor.isReconnecting());
+        
+        assertTrue("A trial reconnect should start after the backoff",
+                   connector.firstTrialStarted.await(5, TimeUnit.SECONDS));
+        assertEquals("The circuit should be half open during the trial",
+                     DatabaseConnector.CircuitState.HALF_OPEN, supervisor.getState());
+        
+        connector.releaseFirstTrial.countDown();
+        Thread.sleep(50);
+        assertEquals("A failed trial should reopen the circuit",
+                     DatabaseConnector.CircuitState.OPEN, supervisor.getState());
+        
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (supervisor.isReconnecting() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("A successful trial should close the circuit",
+                     DatabaseConnector.CircuitState.CLOSED, supervisor.getState());
+        assertEquals("Reconnecting should stop once the circuit is closed", 2, connector.trials.get());
+        supervisor.close();
+    }
+    
+    /**
+     * Connector whose first reconnect attempt waits for the test and fails, and
+     * whose later attempts succeed
+     */
+    private static final class StubConnector extends DatabaseConnector {
+        final CountDownLatch firstTrialStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirstTrial = new CountDownLatch(1);
+        final AtomicInteger trials = new AtomicInteger();
+        
+        StubConnector() {
+            super(CONNECTION_STRING);
+        }
+        
+        @Override
+        boolean reopen() {
+            if (trials.incrementAndGet() > 1) {
+                return true;
+            }
+            firstTrialStarted.countDown();
+            try {
+                releaseFirstTrial.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+    }
+}
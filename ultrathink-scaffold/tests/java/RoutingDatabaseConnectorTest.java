@@ -0,0 +1,115 @@
+package com.modular.database;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.After;
+import static org.junit.Assert.*;
+
+public class RoutingDatabaseConnectorTest {
+    private RoutingDatabaseConnector router;
+    private DatabaseConnector setup;
+    private final String connectionString = "postgresql://localhost:5432/mydb";
+    // Same database with every transaction read-only, so it rejects writes as a standby does
+    private final String replicaConnectionString =
+        "postgresql://localhost:5432/mydb?options=-c%20default_transaction_read_only%3Don";
+
+    @Before
+    public void setUp() throws DatabaseException {
+        setup = new DatabaseConnector(connectionString);
+        setup.connect();
+        setup.execute("CREATE SEQUENCE IF NOT EXISTS routing_test_seq");
+        // An operator whose function writes, which no lexer can tell from a plain read
+        setup.execute("CREATE OR REPLACE FUNCTION routing_test_bump(integer, integer) RETURNS bigint "
+                      + "AS 'SELECT nextval(''routing_test_seq'')' LANGUAGE sql");
+        setup.execute("DROP OPERATOR IF EXISTS +++ (integer, integer)");
+        setup.execute("CREATE OPERATOR +++ (LEFTARG = integer, RIGHTARG = integer, FUNCTION = routing_test_bump)");
+
+        router = new RoutingDatabaseConnector(connectionString);
+        router.addReplica(replicaConnectionString, 1);
+        router.connect();
+    }
+
+    @After
+    public void tearDown() throws DatabaseException {
+        if (router != null) {
+            router.close();
+        }
+        if (setup != null) {
+            setup.execute("DROP OPERATOR IF EXISTS +++ (integer, integer)");
+            setup.execute("DROP FUNCTION IF EXISTS routing_test_bump(integer, integer)");
+            setup.execute("DROP SEQUENCE IF EXISTS routing_test_seq");
+            setup.close();
+        }
+    }
+
+    @Test
+    public void testPlainReadGoesToReplica() throws DatabaseException {
+        try (QueryResult result = router.query("SELECT count(*), max(lower(username)) FROM users")) {
+            assertEquals(1, result.getRowCount());
+        }
+        assertEquals("Plain read should be served by the replica", 1, router.getReplicaReadCount());
+        assertEquals(0, router.getPrimaryReadCount());
+    }
+
+    @Test
+    public void testWritingFunctionsGoToPrimary() throws DatabaseException {
+        String[] writes = {
+            "SELECT nextval('routing_test_seq')",
+            "SELECT setval('routing_test_seq', 10)",
+            "SELECT pg_advisory_lock(42), pg_advisory_unlock(42)",
+            "SELECT routing_test_bump(1, 2)",
+            "SELECT count(*) FROM users WHERE id < (SELECT nextval('routing_test_seq'))"
+        };
+        for (String sql : writes) {
+            try (QueryResult result = router.query(sql)) {
+                assertEquals(sql, 1, result.getRowCount());
+            }
+        }
+        assertEquals("Calls to writing functions must not reach the replica", 0, router.getReplicaReadCount());
+        assertEquals(writes.length, router.getPrimaryReadCount());
+    }
+
+    @Test
+    public void testReadOnlyErrorRetriesOnPrimary() throws DatabaseException {
+        try (QueryResult result = router.query("SELECT 1 +++ 2")) {
+            assertEquals("Write hidden in an operator should succeed on the primary", 1, result.getRowCount());
+        }
+        assertEquals(0, router.getReplicaReadCount());
+        assertEquals(1, router.getPrimaryReadCount());
+
+        // The replica stays in rotation for plain reads
+        try (QueryResult result = router.query("SELECT 1")) {
+            assertEquals(1, result.getRowCount());
+        }
+        assertEquals(1, router.getReplicaReadCount());
+    }
+
+    @Test
+    public void testSessionPinsAfterWritingQuery() throws DatabaseException {
+        RoutingDatabaseConnector.Session session = router.openSession();
+        try (QueryResult result = session.query("SELECT count(*) FROM users")) {
+            assertEquals(1, result.getRowCount());
+        }
+        assertFalse(session.isPinnedToPrimary());
+
+        try (QueryResult result = session.query("SELECT nextval('routing_test_seq')")) {
+            assertEquals(1, result.getRowCount());
+        }
+        assertTrue("A writing function should pin the session", session.isPinnedToPrimary());
+
+        long replicaReads = router.getReplicaReadCount();
+        try (QueryResult result = session.query("SELECT count(*) FROM users")) {
+            assertEquals(1, result.getRowCount());
+        }
+        assertEquals("Pinned session should read from the primary", replicaReads, router.getReplicaReadCount());
+    }
+
+    @Test
+    public void testSessionPinsAfterReplicaRejectsWrite() throws DatabaseException {
+        RoutingDatabaseConnector.Session session = router.openSession();
+        try (QueryResult result = session.query("SELECT 1 +++ 2")) {
+            assertEquals(1, result.getRowCount());
+        }
+        assertTrue("A read the replica rejected as a write should pin the session", session.isPinnedToPrimary());
+    }
+}
@@ -0,0 +1,136 @@
+package com.modular.database;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+public class SqlLexerTest {
+
+    private static SqlLexer.Parameterized parameterize(String sql) {
+        return SqlLexer.parameterize(sql, SqlLexer.tokenize(sql));
+    }
+
+    private static Set<String> tables(String sql) {
+        return SqlLexer.referencedTables(SqlLexer.tokenize(sql));
+    }
+
+    @Test
+    public void testNormalizeIgnoresLayoutCommentsAndKeywordCase() {
+        String a = SqlLexer.normalize(SqlLexer.tokenize("SELECT id FROM users WHERE name = 'Ann' -- note\n;"));
+        String b = SqlLexer.normalize(SqlLexer.tokenize("select  id\n  from USERS /* c */ where name='Ann'"));
+        assertEquals("Equivalent statements should normalize alike", a, b);
+
+        String quoted = SqlLexer.normalize(SqlLexer.tokenize("SELECT 'Ann', \"Users\""));
+        assertTrue("Quoted text should keep its case", quoted.contains("'Ann'") && quoted.contains("\"Users\""));
+    }
+
+    @Test
+    public void testReferencedTables() {
+        assertEquals(Set.of("users", "orders"),
+                     tables("SELECT u.id FROM users u JOIN public.orders AS o ON o.user_id = u.id"));
+        assertEquals(Set.of("a", "b", "My Table"), tables("SELECT * FROM a, b x, \"My Table\" WHERE 1 = 1"));
+        assertEquals(Set.of("users"), tables("INSERT INTO users (name) VALUES ('x')"));
+        assertEquals(Set.of("items"), tables("UPDATE ONLY shop.items SET price = 1"));
+        assertEquals(Set.of("t1", "t2"), tables("TRUNCATE TABLE t1, t2"));
+        assertEquals("Comments and strings should not name tables", Set.of(),
+                     tables("SELECT 'from users' /* FROM orders */"));
+    }
+
+    @Test
+    public void testIsReadOnly() {
+        assertTrue(SqlLexer.isReadOnly(SqlLexer.tokenize("SELECT id FROM users")));
+        assertFalse(SqlLexer.isReadOnly(SqlLexer.tokenize("SELECT id FROM users FOR UPDATE")));
+        assertFalse(SqlLexer.isReadOnly(SqlLexer.tokenize("INSERT INTO users (id) VALUES (1) RETURNING id")));
+        assertFalse(SqlLexer.isReadOnly(SqlLexer.tokenize(
+            "WITH moved AS (DELETE FROM queue RETURNING *) SELECT count(*) FROM moved")));
+    }
+
+    @Test
+    public void testIsReadOnlyChecksFunctionCalls() {
+        assertTrue(SqlLexer.isReadOnly(SqlLexer.tokenize(
+            "SELECT count(*), coalesce(max(lower(name)), 'none') FROM users WHERE id IN (SELECT user_id FROM orders)")));
+        assertTrue("Type modifiers are not calls",
+                   SqlLexer.isReadOnly(SqlLexer.tokenize("SELECT CAST(price AS numeric(10, 2)), name::varchar(20) FROM items")));
+        assertTrue(SqlLexer.isReadOnly(SqlLexer.tokenize("SELECT pg_catalog.now()")));
+
+        assertFalse(SqlLexer.isReadOnly(SqlLexer.tokenize("SELECT nextval('users_id_seq')")));
+        assertFalse(SqlLexer.isReadOnly(SqlLexer.tokenize("SELECT setval('users_id_seq', 10)")));
+        assertFalse(SqlLexer.isReadOnly(SqlLexer.tokenize("SELECT pg_advisory_lock(42)")));
+        assertFalse(SqlLexer.isReadOnly(SqlLexer.tokenize("SELECT id FROM users WHERE archive_user(id)")));
+        assertFalse("Quoted names are user functions", SqlLexer.isReadOnly(SqlLexer.tokenize("SELECT \"Bump\"()")));
+        assertFalse("Only pg_catalog built-ins are trusted",
+                    SqlLexer.isReadOnly(SqlLexer.tokenize("SELECT app.lower(name) FROM users")));
+    }
+
+    @Test
+    public void testParameterizeLiterals() {
+        SqlLexer.Parameterized insert = parameterize(
+            "INSERT INTO users (username, email) VALUES ('O''Neil', 'o@example.com')");
+        assertEquals("INSERT INTO users (username, email) VALUES ($1, $2)", insert.sql);
+        assertEquals(Arrays.asList("O'Neil", "o@example.com"), insert.parameters);
+
+        SqlLexer.Parameterized select = parameterize("SELECT id FROM users WHERE age > 21 AND score < 3.5 LIMIT 10");
+        assertEquals("SELECT id FROM users WHERE age > $1::int4 AND score < $2::numeric LIMIT $3::int4", select.sql);
+        assertEquals(Arrays.asList("21", "3.5", "10"), select.parameters);
+    }
+
+    @Test
+    public void testParameterizeKeepsOrderingPositionsInline() {
+        SqlLexer.Parameterized query = parameterize("SELECT name, age FROM users WHERE age > 30 ORDER BY lower(name), 2");
+        assertEquals("Position after a function call must stay a position",
+                     "SELECT name, age FROM users WHERE age > $1::int4 ORDER BY lower(name), 2", query.sql);
+
+        query = parameterize("SELECT age, count(*) FROM users GROUP BY 1 HAVING count(*) > 5 ORDER BY 2 DESC LIMIT 10");
+        assertEquals("SELECT age, count(*) FROM users GROUP BY 1 HAVING count(*) > $1::int4 ORDER BY 2 DESC LIMIT $2::int4",
+                     query.sql);
+
+        query = parameterize("SELECT * FROM (SELECT id FROM users ORDER BY 1 LIMIT 5) s WHERE id > 7 ORDER BY 1");
+        assertEquals("Subquery lists should end with their parentheses",
+                     "SELECT * FROM (SELECT id FROM users ORDER BY 1 LIMIT $1::int4) s WHERE id > $2::int4 ORDER BY 1",
+                     query.sql);
+    }
+
+    @Test
+    public void testParameterizeKeepsNonParameterLiteralsInline() {
+        SqlLexer.Parameterized query = parameterize("SELECT id FROM t WHERE d = DATE '2024-01-01' AND s = E'a\\nb'"
+            + " AND b = B'1010' AND x::varchar(20) = y AND CAST(y AS numeric(10, 2)) > 99999999999");
+        assertEquals("SELECT id FROM t WHERE d = DATE '2024-01-01' AND s = E'a\\nb'"
+                     + " AND b = B'1010' AND x::varchar(20) = y AND CAST(y AS numeric(10, 2)) > $1::int8",
+                     query.sql);
+        assertEquals(List.of("99999999999"), query.parameters);
+    }
+
+    @Test
+    public void testParameterizeKeepsResultShapes() {
+        assertNull("A parameter would rename the column to int4", parameterize("SELECT 5"));
+        assertNull("A parameter would change the column type", parameterize("SELECT -2147483648"));
+        assertNull("An untyped parameter cannot be prepared", parameterize("SELECT 'hello'"));
+
+        SqlLexer.Parameterized query = parameterize(
+            "SELECT coalesce(x, 'none'), 1 + 2 AS three FROM t WHERE id = 5 AND name = lower('ANN') LIMIT 3 OFFSET 6");
+        assertEquals("SELECT coalesce(x, 'none'), 1 + 2 AS three FROM t WHERE id = $1::int4 AND name = lower('ANN')"
+                     + " LIMIT $2::int4 OFFSET $3::int4", query.sql);
+
+        query = parameterize("SELECT (SELECT name FROM users WHERE id = 5), 7, extract(epoch FROM now()) + 1 FROM t");
+        assertEquals("Only the subquery's own select list stays inline",
+                     "SELECT (SELECT name FROM users WHERE id = $1::int4), 7, extract(epoch FROM now()) + 1 FROM t",
+                     query.sql);
+
+        query = parameterize("UPDATE users SET name = 'x', age = 3 WHERE id IN (1, 2)");
+        assertEquals("UPDATE users SET name = $1, age = $2::int4 WHERE id IN ($3::int4, $4::int4)", query.sql);
+    }
+
+    @Test
+    public void testParameterizeSkipsIneligibleStatements() {
+        assertNull("Utility statements take no parameters", parameterize("CREATE TABLE t (a int DEFAULT 5)"));
+        assertNull("Statements already using parameters are left alone", parameterize("SELECT $1 FROM t WHERE a = 1"));
+        assertNull("Statements without literals need no rewrite", parameterize("SELECT id FROM users"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnterminatedString() {
+        SqlLexer.tokenize("SELECT 'unterminated");
+    }
+}